@@ -0,0 +1,67 @@
+package com.maybeitssquid.ach;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.Normalizer;
+
+/**
+ * Build-time generator for the table that {@link Normalizing} uses to normalize a single code point without creating
+ * strings. For each normalization form, in {@link Normalizer.Form#values()} order, it records every code point above
+ * the ASCII range that the form changes, along with the result. Hangul syllables are left out because their
+ * decomposition is computed arithmetically. The table is written as:
+ *
+ * <pre>
+ *     int     magic ({@link DecompositionTable#MAGIC})
+ *     int     number of forms
+ *     form*   entry count as int, then the entries
+ *     entry   code point as int, length in UTF-16 units as unsigned byte, then that many chars
+ * </pre>
+ *
+ * Entries are written in ascending code point order.
+ */
+public final class DecompositionTableGenerator {
+
+    private DecompositionTableGenerator() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: DecompositionTableGenerator <output file>");
+        }
+        final Path output = Paths.get(args[0]);
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output)))) {
+            out.writeInt(DecompositionTable.MAGIC);
+            out.writeInt(Normalizer.Form.values().length);
+            for (final Normalizer.Form form : Normalizer.Form.values()) {
+                final ByteArrayOutputStream entries = new ByteArrayOutputStream();
+                final DataOutputStream data = new DataOutputStream(entries);
+                int count = 0;
+                for (int codepoint = 0x80; codepoint <= Character.MAX_CODE_POINT; codepoint++) {
+                    if (DecompositionTable.isHangulSyllable(codepoint)) {
+                        continue;
+                    }
+                    final String original = Character.toString(codepoint);
+                    final String normalized = Normalizer.normalize(original, form);
+                    if (!normalized.equals(original)) {
+                        if (normalized.length() > 0xFF) {
+                            throw new IllegalStateException(String.format("Normalization of %04X is too long", codepoint));
+                        }
+                        data.writeInt(codepoint);
+                        data.writeByte(normalized.length());
+                        data.writeChars(normalized);
+                        count++;
+                    }
+                }
+                data.flush();
+                out.writeInt(count);
+                entries.writeTo(out);
+            }
+        }
+    }
+}
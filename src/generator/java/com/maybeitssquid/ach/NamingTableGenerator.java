@@ -0,0 +1,149 @@
+package com.maybeitssquid.ach;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.lang.Character.*;
+
+/**
+ * Build-time generator for the table that {@link Naming} consults instead of parsing Unicode character names at
+ * runtime. For every code point above the ASCII range whose general category {@code Naming} handles by name, it
+ * records the ASCII text that the name rules produce. The table is written as:
+ *
+ * <pre>
+ *     int    magic ({@link NamingTable#MAGIC})
+ *     int    entry count
+ *     entry* code point as int, length as unsigned byte, then that many ASCII bytes
+ * </pre>
+ *
+ * Entries are written in ascending code point order.
+ */
+public final class NamingTableGenerator {
+
+    private static final Pattern latin = Pattern.compile("LATIN (SMALL |CAPITAL )?LETTER ([A-Z]+ )*(?<letter>\\p{Upper}\\p{Upper}?)\\b");
+
+    private NamingTableGenerator() {
+    }
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: NamingTableGenerator <output file>");
+        }
+        final Path output = Paths.get(args[0]);
+        if (output.getParent() != null) {
+            Files.createDirectories(output.getParent());
+        }
+
+        final ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        final DataOutputStream data = new DataOutputStream(entries);
+        int count = 0;
+        for (int codepoint = 0x80; codepoint <= Character.MAX_CODE_POINT; codepoint++) {
+            final String named = named(codepoint);
+            if (named != null && !named.isEmpty()) {
+                final byte[] ascii = named.getBytes(StandardCharsets.US_ASCII);
+                data.writeInt(codepoint);
+                data.writeByte(ascii.length);
+                data.write(ascii);
+                count++;
+            }
+        }
+        data.flush();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(output)))) {
+            out.writeInt(NamingTable.MAGIC);
+            out.writeInt(count);
+            entries.writeTo(out);
+        }
+    }
+
+    /**
+     * Applies the name rules for the general category of a code point.
+     *
+     * @param codepoint the code point
+     * @return the ASCII transliteration, an empty string if the rules find none, or {@code null} if the category is
+     * not handled by name
+     */
+    static String named(final int codepoint) {
+        switch (Character.getType(codepoint)) {
+            case UPPERCASE_LETTER:
+                return letter(codepoint);
+            case LOWERCASE_LETTER:
+                return letter(codepoint).toLowerCase(Locale.ROOT);
+            case MODIFIER_LETTER:
+            case OTHER_PUNCTUATION:
+            case MODIFIER_SYMBOL:
+            case MATH_SYMBOL:
+                return byName(codepoint);
+            case OTHER_SYMBOL:
+                return codepoint == Categorizing.UNICODE_REPLACEMENT ? "?" : byName(codepoint);
+            case START_PUNCTUATION:
+                return bracket(codepoint, "[", "{", "(");
+            case END_PUNCTUATION:
+                return bracket(codepoint, "]", "}", ")");
+            case INITIAL_QUOTE_PUNCTUATION:
+            case FINAL_QUOTE_PUNCTUATION:
+                return Character.getName(codepoint).contains("SINGLE") ? "'" : "\"";
+            default:
+                return null;
+        }
+    }
+
+    private static String letter(final int codepoint) {
+        final Matcher m = latin.matcher(Character.getName(codepoint));
+        return m.find() ? m.group("letter") : "";
+    }
+
+    private static String bracket(final int codepoint, final String square, final String curly, final String other) {
+        final String name = Character.getName(codepoint);
+        if (name.contains("SQUARE BRACKET")) {
+            return square;
+        } else if (name.contains("CURLY BRACKET")) {
+            return curly;
+        } else {
+            return other;
+        }
+    }
+
+    private static String byName(final int codepoint) {
+        final String name = Character.getName(codepoint);
+        if (name.contains("EXCLAMATION MARK")) {
+            return "!";
+        } else if (name.contains("QUESTION MARK")) {
+            return "?";
+        } else if (name.contains("SEMICOLON")) {
+            return ";";
+        } else if (name.contains("COMMA")) {
+            return ",";
+        } else if (name.contains("COLON")) {
+            return ":";
+        } else if (name.contains("TILDE")) {
+            return "~";
+        } else if (name.contains("PLUS SIGN")) {
+            return "+";
+        } else if (name.contains("EQUALS SIGN")) {
+            return "=";
+        } else if (name.contains("REVERSE SOLIDUS")) {
+            return "\\";
+        } else if (name.contains("SOLIDUS")) {
+            return "/";
+        } else if (name.contains("ASTERISK")) {
+            return "*";
+        } else if (name.contains("PERCENT SIGN")) {
+            return "%";
+        } else if (name.contains("AMPERSAND")) {
+            return "&";
+        } else if (name.contains("FULL STOP")) {
+            return ".";
+        } else if (name.contains("APOSTROPHE")) {
+            return "'";
+        } else {
+            return "";
+        }
+    }
+}
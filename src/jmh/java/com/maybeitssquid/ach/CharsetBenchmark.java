@@ -0,0 +1,126 @@
+package com.maybeitssquid.ach;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and decodes each {@link Corpus} with each provider charset through the three ways an application reaches a
+ * charset: the {@link Charset#encode(CharBuffer)} and {@link Charset#decode(ByteBuffer)} conveniences, which allocate
+ * their results, reused {@link CharsetEncoder} and {@link CharsetDecoder} instances over heap buffers, and the
+ * {@link OutputStreamWriter} and {@link InputStreamReader} adapters.
+ *
+ * <p>Decoding starts from the UTF-8 bytes of the corpus, so every corpus other than {@link Corpus#CLEAN} feeds the
+ * decoder bytes that it must reject. All coders replace bad input rather than reporting it, as the conveniences and
+ * adapters do. Run with the {@code jmh} task, which enables the gc profiler so that each result also shows allocation
+ * per operation.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CharsetBenchmark {
+
+    @Param({"X-ACH", "X-ACH-Newlines", "X-ACH-Aggressive", "X-US-ASCII-Transliterating"})
+    public String charsetName;
+
+    @Param({"CLEAN", "LATIN1", "MIXED", "HOSTILE"})
+    public Corpus corpus;
+
+    private Charset charset;
+
+    private char[] chars;
+
+    private byte[] bytes;
+
+    private CharsetEncoder encoder;
+
+    private CharsetDecoder decoder;
+
+    private CharBuffer charsIn;
+
+    private ByteBuffer bytesIn;
+
+    private ByteBuffer encoded;
+
+    private CharBuffer decoded;
+
+    private ByteArrayOutputStream sink;
+
+    private final char[] readBuffer = new char[8 * 1024];
+
+    @Setup
+    public void setup() {
+        charset = Charset.forName(charsetName);
+        chars = corpus.text().toCharArray();
+        bytes = corpus.text().getBytes(StandardCharsets.UTF_8);
+
+        encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        charsIn = CharBuffer.wrap(chars);
+        bytesIn = ByteBuffer.wrap(bytes);
+        // Transliteration can expand a character, so leave generous room rather than handle overflow
+        encoded = ByteBuffer.allocate(chars.length * 4);
+        decoded = CharBuffer.allocate(bytes.length * 2);
+        sink = new ByteArrayOutputStream(chars.length * 4);
+    }
+
+    @Benchmark
+    public ByteBuffer charsetEncode() {
+        return charset.encode(CharBuffer.wrap(chars));
+    }
+
+    @Benchmark
+    public CharBuffer charsetDecode() {
+        return charset.decode(ByteBuffer.wrap(bytes));
+    }
+
+    @Benchmark
+    public ByteBuffer encoderLoop() {
+        charsIn.rewind();
+        encoded.clear();
+        encoder.reset();
+        encoder.encode(charsIn, encoded, true);
+        encoder.flush(encoded);
+        return encoded;
+    }
+
+    @Benchmark
+    public CharBuffer decoderLoop() {
+        bytesIn.rewind();
+        decoded.clear();
+        decoder.reset();
+        decoder.decode(bytesIn, decoded, true);
+        decoder.flush(decoded);
+        return decoded;
+    }
+
+    @Benchmark
+    public int writer() throws IOException {
+        sink.reset();
+        final Writer writer = new OutputStreamWriter(sink, charset);
+        writer.write(chars);
+        writer.flush();
+        return sink.size();
+    }
+
+    @Benchmark
+    public int reader() throws IOException {
+        final Reader reader = new InputStreamReader(new ByteArrayInputStream(bytes), charset);
+        int total = 0;
+        for (int n = reader.read(readBuffer); n > 0; n = reader.read(readBuffer)) {
+            total += n;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,63 @@
+package com.maybeitssquid.ach;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks up a charset by name and encodes a short field with it, rotating through more charsets than the JDK's
+ * two-entry lookup cache holds. Every lookup after the first two therefore goes back to the ServiceLoader and a new
+ * {@link TransliteratingASCIIProvider}, which is the pattern that used to discard the transliteration memo.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CharsetLookupBenchmark {
+
+    private static final String[] NAMES = {"X-ACH-Aggressive", "X-US-ASCII-Transliterating", "X-ACH-Newlines", "X-ACH"};
+
+    private static final String FIELD = "Françoise Müller-Łódź";
+
+    private int next;
+
+    @Benchmark
+    public ByteBuffer forNameAndEncode() {
+        final String name = NAMES[next];
+        next = next + 1 == NAMES.length ? 0 : next + 1;
+        return Charset.forName(name).encode(FIELD);
+    }
+
+    @Benchmark
+    public ByteBuffer lookupAndEncode() {
+        final String name = NAMES[next];
+        next = next + 1 == NAMES.length ? 0 : next + 1;
+        return TransliteratingASCIIProvider.lookup(name).encode(FIELD);
+    }
+
+    @Benchmark
+    public ByteBuffer heldAndEncode(final Held held) {
+        final Charset charset = held.charsets[next];
+        next = next + 1 == NAMES.length ? 0 : next + 1;
+        return charset.encode(FIELD);
+    }
+
+    /**
+     * Charsets looked up once, as the baseline for what the lookup itself costs.
+     */
+    @State(Scope.Thread)
+    public static class Held {
+        final Charset[] charsets = new Charset[NAMES.length];
+
+        @Setup
+        public void setup() {
+            for (int i = 0; i < NAMES.length; i++) {
+                charsets[i] = Charset.forName(NAMES[i]);
+            }
+        }
+    }
+}
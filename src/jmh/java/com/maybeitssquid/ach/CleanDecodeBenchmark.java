@@ -0,0 +1,58 @@
+package com.maybeitssquid.ach;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures decoding of a clean 1 MB ACH file held in heap buffers, the case that the word-at-a-time validation in
+ * the decoder is meant to speed up. Newline-separated records are used for {@code X-ACH-Newlines}, and unbroken
+ * 94-byte records for {@code X-ACH}, which does not allow linefeeds.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CleanDecodeBenchmark {
+
+    private static final int SIZE = 1 << 20;
+
+    @Param({"X-ACH", "X-ACH-Newlines"})
+    public String charsetName;
+
+    private ByteBuffer in;
+
+    private CharBuffer out;
+
+    private CharsetDecoder decoder;
+
+    @Setup
+    public void setup() {
+        final Charset charset = Charset.forName(charsetName);
+        final String separator = "X-ACH".equals(charsetName) ? "" : "\n";
+        final String record = "622123456789123456789        0000012345ID NUMBER      JOHN Q PUBLIC         0123456789012345"
+                + separator;
+        final StringBuilder text = new StringBuilder(SIZE);
+        while (text.length() + record.length() <= SIZE) {
+            text.append(record);
+        }
+        in = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.US_ASCII));
+        out = CharBuffer.allocate(in.capacity());
+        decoder = charset.newDecoder();
+    }
+
+    @Benchmark
+    public CharBuffer decode() {
+        in.rewind();
+        out.clear();
+        decoder.reset().decode(in, out, true);
+        return out;
+    }
+}
@@ -0,0 +1,73 @@
+package com.maybeitssquid.ach;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost, and with the gc profiler the allocation, of the ways a record writer can encode a short field:
+ * constructing an encoder, {@code String.getBytes(Charset)}, a new {@code OutputStreamWriter}, and a per-thread
+ * encoder borrowed from {@link AchCoders}. Read {@code gc.alloc.rate.norm} for bytes allocated per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CoderAllocationBenchmark {
+
+    private static final String FIELD = "ACME PAYROLL SERVICES";
+
+    @Param({"X-ACH", "X-ACH-Aggressive"})
+    public String charsetName;
+
+    private Charset charset;
+
+    private final char[] chars = FIELD.toCharArray();
+
+    private final ByteBuffer out = ByteBuffer.allocate(64);
+
+    private final ByteArrayOutputStream sink = new ByteArrayOutputStream(64);
+
+    @Setup
+    public void setup() {
+        charset = Charset.forName(charsetName);
+    }
+
+    @Benchmark
+    public CharsetEncoder newEncoder() {
+        return charset.newEncoder();
+    }
+
+    @Benchmark
+    public byte[] getBytes() {
+        return FIELD.getBytes(charset);
+    }
+
+    @Benchmark
+    public int newWriter() throws IOException {
+        sink.reset();
+        final Writer writer = new OutputStreamWriter(sink, charset);
+        writer.write(chars);
+        writer.flush();
+        return sink.size();
+    }
+
+    @Benchmark
+    public ByteBuffer pooledEncoder() {
+        out.clear();
+        final CharsetEncoder encoder = AchCoders.encoder(charset);
+        encoder.encode(CharBuffer.wrap(chars), out, true);
+        encoder.flush(out);
+        return out;
+    }
+}
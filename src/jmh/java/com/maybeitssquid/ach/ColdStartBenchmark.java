@@ -0,0 +1,65 @@
+package com.maybeitssquid.ach;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the first file in a new script, which is where the memo in {@link Normalizing} is empty and every letter
+ * is a miss. Each invocation starts from a fresh {@link Naming}, with or without {@linkplain Normalizing#prefetchBlocks()
+ * block prefetching}, and encodes a corpus in 4 KB chunks as a stream would deliver it.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 50)
+@Measurement(iterations = 200)
+@Fork(1)
+@State(Scope.Thread)
+public class ColdStartBenchmark {
+
+    private static final int CHUNK = 4 * 1024;
+
+    @Param({"false", "true"})
+    public boolean prefetch;
+
+    @Param({"LATIN1", "MIXED", "VIETNAMESE", "POLISH"})
+    public Corpus corpus;
+
+    private char[] chars;
+
+    private CharsetEncoder encoder;
+
+    private final ByteBuffer encoded = ByteBuffer.allocate(Corpus.LENGTH * 4);
+
+    @Setup(Level.Trial)
+    public void setupCorpus() {
+        chars = corpus.text().toCharArray();
+    }
+
+    @Setup(Level.Invocation)
+    public void setupEncoder() throws InterruptedException {
+        // Let the previous invocation's prefetches finish, so that they do not compete with this one
+        Normalizing.awaitPrefetches();
+        final Naming naming = new Naming();
+        final TransliteratingASCII charset = new TransliteratingASCII("X-Cold-Start", new String[0],
+                prefetch ? naming.prefetchBlocks() : naming);
+        encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Benchmark
+    public ByteBuffer firstFile() {
+        encoded.clear();
+        for (int start = 0; start < chars.length; start += CHUNK) {
+            final int end = Math.min(start + CHUNK, chars.length);
+            encoder.encode(CharBuffer.wrap(chars, start, end - start), encoded, end == chars.length);
+        }
+        encoder.flush(encoded);
+        return encoded;
+    }
+}
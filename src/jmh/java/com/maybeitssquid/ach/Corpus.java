@@ -0,0 +1,91 @@
+package com.maybeitssquid.ach;
+
+import java.text.Normalizer;
+import java.util.Random;
+
+/**
+ * Text inputs for the benchmarks, each generated deterministically so that runs are comparable. Every corpus is
+ * assembled from the same kind of content found in ACH name and addenda fields, drawn from a different mix of scripts.
+ */
+public enum Corpus {
+
+    /**
+     * Printable ASCII only, as in a clean ACH file.
+     */
+    CLEAN(
+            "JOHN", "Q", "PUBLIC", "ACME", "PAYROLL", "SERVICES", "INC", "0000012345", "123456789", "PPD", "CCD",
+            "ID", "NUMBER", "REF#", "42-17", "$100.00", "A/P", "TRUST", "&", "CO."),
+
+    /**
+     * Western European names, where roughly one character in six has a diacritic or is a ligature.
+     */
+    LATIN1(
+            "José", "Müller", "Françoise", "Øster", "Ærø", "Straße", "Ñandú", "Zoë", "Björk", "Côte", "d'Ivoire",
+            "Société", "Générale", "Crème", "Brûlée", "São", "Paulo", "Ltda.", "GmbH", "Señor"),
+
+    /**
+     * Latin, Greek, Cyrillic, Vietnamese and Polish text, with typographic punctuation.
+     */
+    MIXED(
+            "Nguyễn", "Thị", "Phương", "Łódź", "Gdańsk", "Αθήνα", "Σωκράτης", "Москва", "Пётр", "Smith",
+            "“quoted”", "‘single’", "Acme—Corp", "№5", "½", "Ⅻ", "ﬁnance", "™", "€100", "Ω"),
+
+    /**
+     * CJK ideographs, kana, Hangul and emoji outside the Basic Multilingual Plane, almost none of which can be
+     * transliterated.
+     */
+    HOSTILE(
+            "株式会社", "東京", "山田太郎", "カタカナ", "ひらがな", "서울", "김민준", "😀", "🚀", "👍🏽", "🇺🇸",
+            "中文", "𠀋", "漢字", "𝔘𝔫𝔦𝔠𝔬𝔡𝔢", "ABC", "123", "🙂", "北京", "台北"),
+
+    /**
+     * Vietnamese names, precomposed, where most syllables stack two diacritics on one vowel.
+     */
+    VIETNAMESE(
+            "Nguyễn", "Trần", "Lê", "Phạm", "Hoàng", "Huỳnh", "Phan", "Vũ", "Võ", "Đặng", "Bùi", "Đỗ", "Hồ",
+            "Ngô", "Dương", "Thị", "Ngọc", "Ánh", "Phương", "Hương"),
+
+    /**
+     * Polish names and place names, precomposed.
+     */
+    POLISH(
+            "Łódź", "Gdańsk", "Kraków", "Wrocław", "Poznań", "Częstochowa", "Białystok", "Zielona", "Góra",
+            "Wójcik", "Kowalczyk", "Woźniak", "Dąbrowski", "Żółć", "Małgorzata", "Jędrzej", "Stanisław", "Spółka",
+            "z", "o.o."),
+
+    /**
+     * The Vietnamese and Polish words in Normalization Form D, so that every diacritic is a separate combining mark,
+     * as text often arrives from macOS file names and some web forms.
+     */
+    DECOMPOSED(nfd(
+            "Nguyễn", "Trần", "Phạm", "Hoàng", "Đặng", "Thị", "Ngọc", "Ánh", "Phương", "Hương",
+            "Łódź", "Gdańsk", "Kraków", "Poznań", "Częstochowa", "Wójcik", "Dąbrowski", "Żółć", "Jędrzej", "Spółka"));
+
+    /**
+     * Approximate length of each corpus, in chars.
+     */
+    public static final int LENGTH = 16 * 1024;
+
+    private final String text;
+
+    Corpus(final String... words) {
+        final Random random = new Random(ordinal() + 0xACL);
+        final StringBuilder text = new StringBuilder(LENGTH + 32);
+        while (text.length() < LENGTH) {
+            text.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        this.text = text.toString();
+    }
+
+    private static String[] nfd(final String... words) {
+        final String[] decomposed = new String[words.length];
+        for (int i = 0; i < words.length; i++) {
+            decomposed[i] = Normalizer.normalize(words[i], Normalizer.Form.NFD);
+        }
+        return decomposed;
+    }
+
+    public String text() {
+        return text;
+    }
+}
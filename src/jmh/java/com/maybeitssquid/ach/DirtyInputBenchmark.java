@@ -0,0 +1,89 @@
+package com.maybeitssquid.ach;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes and encodes input that is mostly errors under each {@link CodingErrorAction}. Decoding feeds the UTF-8 bytes
+ * of a corpus to a charset that expects ASCII, so every byte of a multibyte sequence is malformed, which is what
+ * happens when a UTF-8 file is read as {@code X-ACH}. Encoding feeds the corpus itself, so each character that cannot
+ * be transliterated is unmappable. Under {@link CodingErrorAction#REPORT} the benchmark skips each error and carries
+ * on, as a validator counting errors would.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DirtyInputBenchmark {
+
+    @Param({"X-ACH", "X-ACH-Aggressive"})
+    public String charsetName;
+
+    @Param({"HOSTILE", "MIXED"})
+    public Corpus corpus;
+
+    @Param({"IGNORE", "REPLACE", "REPORT"})
+    public String action;
+
+    private CharsetEncoder encoder;
+
+    private CharsetDecoder decoder;
+
+    private char[] chars;
+
+    private byte[] bytes;
+
+    private ByteBuffer encoded;
+
+    private CharBuffer decoded;
+
+    @Setup
+    public void setup() {
+        final Charset charset = Charset.forName(charsetName);
+        final CodingErrorAction onError = "IGNORE".equals(action) ? CodingErrorAction.IGNORE
+                : "REPLACE".equals(action) ? CodingErrorAction.REPLACE : CodingErrorAction.REPORT;
+        encoder = charset.newEncoder().onMalformedInput(onError).onUnmappableCharacter(onError);
+        decoder = charset.newDecoder().onMalformedInput(onError).onUnmappableCharacter(onError);
+        chars = corpus.text().toCharArray();
+        bytes = corpus.text().getBytes(StandardCharsets.UTF_8);
+        // Transliteration can expand a character, so leave generous room rather than handle overflow
+        encoded = ByteBuffer.allocate(chars.length * 4);
+        decoded = CharBuffer.allocate(bytes.length);
+    }
+
+    @Benchmark
+    public int decode() {
+        final ByteBuffer in = ByteBuffer.wrap(bytes);
+        decoder.reset();
+        decoded.clear();
+        int errors = 0;
+        CoderResult result;
+        while ((result = decoder.decode(in, decoded, true)).isError()) {
+            in.position(in.position() + result.length());
+            errors++;
+        }
+        decoder.flush(decoded);
+        return decoded.position() + errors;
+    }
+
+    @Benchmark
+    public int encode() {
+        final CharBuffer in = CharBuffer.wrap(chars);
+        encoder.reset();
+        encoded.clear();
+        int errors = 0;
+        CoderResult result;
+        while ((result = encoder.encode(in, encoded, true)).isError()) {
+            in.position(in.position() + result.length());
+            errors++;
+        }
+        encoder.flush(encoded);
+        return encoded.position() + errors;
+    }
+}
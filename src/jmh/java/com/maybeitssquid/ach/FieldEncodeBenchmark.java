@@ -0,0 +1,77 @@
+package com.maybeitssquid.ach;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the encoder on pure printable ASCII, both as the short name and identification fields that make up most
+ * of an ACH entry and as a 1 MB run of records. Both go through the run copy in {@link AsciiRuns}, which is the
+ * Vector API kernel when the {@code jmh} task runs on Java 17 or later.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FieldEncodeBenchmark {
+
+    private static final String RECORD =
+            "622123456789123456789        0000012345ID NUMBER      JOHN Q PUBLIC         0123456789012345";
+
+    private static final String[] FIELDS = {
+            "JOHN Q PUBLIC         ", "ID NUMBER      ", "0000012345", "ACME PAYROLL SERVICES INC", "123456789"
+    };
+
+    @Param({"X-ACH", "X-ACH-Aggressive"})
+    public String charsetName;
+
+    private CharsetEncoder encoder;
+
+    private CharBuffer[] fields;
+
+    private final ByteBuffer fieldOut = ByteBuffer.allocate(64);
+
+    private CharBuffer records;
+
+    private ByteBuffer recordsOut;
+
+    @Setup
+    public void setup() {
+        encoder = Charset.forName(charsetName).newEncoder();
+        fields = new CharBuffer[FIELDS.length];
+        for (int i = 0; i < FIELDS.length; i++) {
+            fields[i] = CharBuffer.wrap(FIELDS[i].toCharArray());
+        }
+        final StringBuilder text = new StringBuilder(1 << 20);
+        while (text.length() + RECORD.length() <= 1 << 20) {
+            text.append(RECORD);
+        }
+        records = CharBuffer.wrap(text.toString().toCharArray());
+        recordsOut = ByteBuffer.allocate(records.capacity());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(5)
+    public ByteBuffer encodeFields() {
+        for (final CharBuffer field : fields) {
+            field.rewind();
+            fieldOut.clear();
+            encoder.reset().encode(field, fieldOut, true);
+        }
+        return fieldOut;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeRecords() {
+        records.rewind();
+        recordsOut.clear();
+        encoder.reset().encode(records, recordsOut, true);
+        return recordsOut;
+    }
+}
@@ -0,0 +1,101 @@
+package com.maybeitssquid.ach;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and then decodes a corpus with several charsets in turn, as a JVM does when it handles more than one file
+ * format. On Java 17 and later each charset gets coder classes of its own, so the JIT sees a single transliterator at
+ * each call site no matter how many charsets are in use. {@link Shared} runs the same benchmarks with
+ * {@link TransliteratingASCII#SPECIALIZE_PROPERTY} set to {@code false} for comparison.
+ *
+ * <p>The {@code PROVIDER} set holds the four provider charsets, whose transliterators are of only two classes,
+ * {@link Filtering} and {@link Naming}. The {@code APPLICATION} set adds two charsets that an application might
+ * define, one over a {@link CompiledTransliterator} and one over a {@link Categorizing}, which makes four.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MixedCharsetBenchmark {
+
+    private static final String[] PROVIDER = {"X-ACH", "X-ACH-Newlines", "X-ACH-Aggressive",
+            "X-US-ASCII-Transliterating"};
+
+    @Param({"PROVIDER", "APPLICATION"})
+    public String charsets;
+
+    @Param({"LATIN1", "MIXED"})
+    public Corpus corpus;
+
+    private CharsetEncoder[] encoders;
+
+    private CharsetDecoder[] decoders;
+
+    private char[] chars;
+
+    private ByteBuffer encoded;
+
+    private CharBuffer decoded;
+
+    @Setup
+    public void setup() {
+        final int count = "APPLICATION".equals(charsets) ? PROVIDER.length + 2 : PROVIDER.length;
+        final Charset[] charset = new Charset[count];
+        for (int i = 0; i < PROVIDER.length; i++) {
+            charset[i] = Charset.forName(PROVIDER[i]);
+        }
+        if (count > PROVIDER.length) {
+            charset[PROVIDER.length] = new TransliteratingASCII("X-Compiled", new String[0], new Naming().compile());
+            charset[PROVIDER.length + 1] = new TransliteratingASCII("X-Categorizing", new String[0],
+                    new Categorizing());
+        }
+
+        encoders = new CharsetEncoder[count];
+        decoders = new CharsetDecoder[count];
+        for (int i = 0; i < count; i++) {
+            encoders[i] = charset[i].newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            decoders[i] = charset[i].newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        chars = corpus.text().toCharArray();
+        // Transliteration can expand a character, so leave generous room rather than handle overflow
+        encoded = ByteBuffer.allocate(chars.length * 4);
+        decoded = CharBuffer.allocate(chars.length * 4);
+    }
+
+    @Benchmark
+    public int roundTrip() {
+        int total = 0;
+        for (int i = 0; i < encoders.length; i++) {
+            encoders[i].reset();
+            encoded.clear();
+            encoders[i].encode(CharBuffer.wrap(chars), encoded, true);
+            encoders[i].flush(encoded);
+            encoded.flip();
+
+            decoders[i].reset();
+            decoded.clear();
+            decoders[i].decode(encoded, decoded, true);
+            decoders[i].flush(decoded);
+            total += decoded.position();
+        }
+        return total;
+    }
+
+    /**
+     * The same benchmarks with every charset sharing one encoder class and one decoder class.
+     */
+    @Fork(value = 1, jvmArgsAppend = "-D" + TransliteratingASCII.SPECIALIZE_PROPERTY + "=false")
+    public static class Shared extends MixedCharsetBenchmark {
+    }
+}
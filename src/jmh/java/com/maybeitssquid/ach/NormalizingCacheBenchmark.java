@@ -0,0 +1,71 @@
+package com.maybeitssquid.ach;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how memo reads in {@link Normalizing} scale when many threads share one transliterator, as they do when
+ * they share one {@link java.nio.charset.Charset}. Every code point is cached during setup, so each operation is a
+ * pure cache hit.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NormalizingCacheBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+        final Naming naming = new Naming();
+
+        final int[] codepoints = new int[0x0250 - 0x00A0];
+
+        @Setup
+        public void setup() {
+            for (int i = 0; i < codepoints.length; i++) {
+                codepoints[i] = 0x00A0 + i;
+                naming.apply(codepoints[i]);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next = ThreadLocalRandom.current().nextInt(0x0250 - 0x00A0);
+    }
+
+    private static char[] read(final Shared shared, final Cursor cursor) {
+        final int[] codepoints = shared.codepoints;
+        final int index = cursor.next;
+        cursor.next = index + 1 == codepoints.length ? 0 : index + 1;
+        return shared.naming.apply(codepoints[index]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void hits1(final Shared shared, final Cursor cursor, final Blackhole bh) {
+        bh.consume(read(shared, cursor));
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void hits8(final Shared shared, final Cursor cursor, final Blackhole bh) {
+        bh.consume(read(shared, cursor));
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void hits32(final Shared shared, final Cursor cursor, final Blackhole bh) {
+        bh.consume(read(shared, cursor));
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void hits64(final Shared shared, final Cursor cursor, final Blackhole bh) {
+        bh.consume(read(shared, cursor));
+    }
+}
@@ -0,0 +1,89 @@
+package com.maybeitssquid.ach;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes an entry detail record the usual way, by formatting the fields into a {@code String} and encoding it, and
+ * through a {@link CompiledRecordLayout}, which writes each field straight into a reusable record.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RecordLayoutBenchmark {
+
+    private static final String ACCOUNT = "1234567890";
+
+    private static final String ID = "ID0001";
+
+    private static final String NAME = "José Müller-Ñúñez";
+
+    private final Charset charset = TransliteratingASCIIProvider.lookup("X-ACH-Aggressive");
+
+    private final byte[] record = new byte[RecordLayout.RECORD_LENGTH];
+
+    private CompiledRecordLayout layout;
+
+    private CompiledRecordLayout.Field transactionCode;
+
+    private CompiledRecordLayout.Field receivingDfi;
+
+    private CompiledRecordLayout.Field checkDigit;
+
+    private CompiledRecordLayout.Field account;
+
+    private CompiledRecordLayout.Field amount;
+
+    private CompiledRecordLayout.Field id;
+
+    private CompiledRecordLayout.Field name;
+
+    private CompiledRecordLayout.Field addenda;
+
+    private CompiledRecordLayout.Field trace;
+
+    private long sequence;
+
+    @Setup
+    public void setup() {
+        layout = RecordLayout.entryDetail().compile(charset);
+        transactionCode = layout.field("transactionCode");
+        receivingDfi = layout.field("receivingDfiIdentification");
+        checkDigit = layout.field("checkDigit");
+        account = layout.field("dfiAccountNumber");
+        amount = layout.field("amount");
+        id = layout.field("individualIdentificationNumber");
+        name = layout.field("individualName");
+        addenda = layout.field("addendaRecordIndicator");
+        trace = layout.field("traceNumber");
+    }
+
+    @Benchmark
+    public byte[] formatAndEncode() {
+        sequence++;
+        final String text = String.format("6%02d%08d%1d%-17.17s%010d%-15.15s%-22.22s  %1d%015d",
+                22, 9100001, 9, ACCOUNT, sequence % 100000, ID, NAME, 0, 91000010000000L + sequence);
+        return text.getBytes(charset);
+    }
+
+    @Benchmark
+    public byte[] compiledLayout() {
+        sequence++;
+        layout.blank(record, 0);
+        transactionCode.write(22, record, 0);
+        receivingDfi.write(9100001, record, 0);
+        checkDigit.write(9, record, 0);
+        account.write(ACCOUNT, record, 0);
+        amount.write(sequence % 100000, record, 0);
+        id.write(ID, record, 0);
+        name.write(NAME, record, 0);
+        addenda.write(0, record, 0);
+        trace.write(91000010000000L + sequence, record, 0);
+        return record;
+    }
+}
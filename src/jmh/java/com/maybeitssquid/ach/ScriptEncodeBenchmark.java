@@ -0,0 +1,68 @@
+package com.maybeitssquid.ach;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes the scripts that stack diacritics, {@link Corpus#VIETNAMESE} and {@link Corpus#POLISH}, along with their
+ * decomposed form in {@link Corpus#DECOMPOSED}, where each mark arrives as a separate code point that the encoder has
+ * to fold into the letter before it. Each corpus is encoded both in one call and in 61-char slices, which split many
+ * letters from their marks across calls.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScriptEncodeBenchmark {
+
+    private static final int SLICE = 61;
+
+    @Param({"X-ACH-Aggressive", "X-US-ASCII-Transliterating"})
+    public String charsetName;
+
+    @Param({"VIETNAMESE", "POLISH", "DECOMPOSED"})
+    public Corpus corpus;
+
+    private CharsetEncoder encoder;
+
+    private char[] chars;
+
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setup() {
+        encoder = Charset.forName(charsetName).newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        chars = corpus.text().toCharArray();
+        encoded = ByteBuffer.allocate(chars.length);
+    }
+
+    @Benchmark
+    public ByteBuffer whole() {
+        encoder.reset();
+        encoded.clear();
+        encoder.encode(CharBuffer.wrap(chars), encoded, true);
+        encoder.flush(encoded);
+        return encoded;
+    }
+
+    @Benchmark
+    public ByteBuffer sliced() {
+        encoder.reset();
+        encoded.clear();
+        for (int start = 0; start < chars.length; start += SLICE) {
+            final int end = Math.min(start + SLICE, chars.length);
+            // These corpora are all in the Basic Multilingual Plane, so no slice ends on half a surrogate pair
+            encoder.encode(CharBuffer.wrap(chars, start, end - start), encoded, end == chars.length);
+        }
+        encoder.flush(encoded);
+        return encoded;
+    }
+}
@@ -0,0 +1,105 @@
+package com.maybeitssquid.ach;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the coder loops on 8 KB chunks, both through the {@code InputStreamReader} and {@code OutputStreamWriter}
+ * adapters, which use heap buffers, and directly against direct buffers, which take the staged path.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StreamCodingBenchmark {
+
+    private static final int CHUNK = 8 * 1024;
+
+    @Param({"X-ACH", "X-ACH-Newlines", "X-ACH-Aggressive", "X-US-ASCII-Transliterating"})
+    public String charsetName;
+
+    private Charset charset;
+
+    private byte[] bytes;
+
+    private char[] chars;
+
+    private final char[] readBuffer = new char[CHUNK];
+
+    private final ByteArrayOutputStream sink = new ByteArrayOutputStream(CHUNK * 2);
+
+    private CharsetDecoder decoder;
+
+    private CharsetEncoder encoder;
+
+    private ByteBuffer directBytes;
+
+    private CharBuffer directChars;
+
+    private ByteBuffer encodedOut;
+
+    private CharBuffer decodedOut;
+
+    @Setup
+    public void setup() {
+        charset = Charset.forName(charsetName);
+        final StringBuilder text = new StringBuilder(CHUNK);
+        final String record = "622123456789123456789        0000012345ID NUMBER      JOHN Q PUBLIC         0123456789012345";
+        while (text.length() < CHUNK) {
+            text.append(record, 0, Math.min(record.length(), CHUNK - text.length()));
+        }
+        chars = text.toString().toCharArray();
+        bytes = text.toString().getBytes(StandardCharsets.US_ASCII);
+
+        decoder = charset.newDecoder();
+        encoder = charset.newEncoder();
+        directBytes = ByteBuffer.allocateDirect(CHUNK);
+        directBytes.put(bytes).flip();
+        directChars = ByteBuffer.allocateDirect(CHUNK * 2).asCharBuffer();
+        directChars.put(chars).flip();
+        encodedOut = ByteBuffer.allocateDirect(CHUNK);
+        decodedOut = ByteBuffer.allocateDirect(CHUNK * 2).asCharBuffer();
+    }
+
+    @Benchmark
+    public int readerChunk() throws IOException {
+        final Reader reader = new InputStreamReader(new ByteArrayInputStream(bytes), charset);
+        int total = 0;
+        for (int n = reader.read(readBuffer); n > 0; n = reader.read(readBuffer)) {
+            total += n;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public int writerChunk() throws IOException {
+        sink.reset();
+        final Writer writer = new OutputStreamWriter(sink, charset);
+        writer.write(chars);
+        writer.flush();
+        return sink.size();
+    }
+
+    @Benchmark
+    public CharBuffer decodeDirect() {
+        directBytes.rewind();
+        decodedOut.clear();
+        decoder.reset().decode(directBytes, decodedOut, true);
+        return decodedOut;
+    }
+
+    @Benchmark
+    public ByteBuffer encodeDirect() {
+        directChars.rewind();
+        encodedOut.clear();
+        encoder.reset().encode(directChars, encodedOut, true);
+        return encodedOut;
+    }
+}
@@ -0,0 +1,132 @@
+package com.maybeitssquid.ach;
+
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.List;
+
+/**
+ * Per-thread encoders and decoders for the charsets of {@link TransliteratingASCIIProvider}. Code that encodes many
+ * short fields, such as a record writer, can borrow a coder from here instead of constructing one per field through
+ * {@code String.getBytes(Charset)} or a new {@code OutputStreamWriter}.
+ *
+ * <p>Each call returns the calling thread's coder for the charset, {@linkplain CharsetEncoder#reset() reset} and
+ * restored to the defaults of a new coder: {@link CodingErrorAction#REPORT} for malformed and unmappable input, and
+ * the charset's default replacement. The coder must not be passed to another thread, and it must not be held across a
+ * call that might borrow the same coder again, because that call would reset it.</p>
+ */
+public final class AchCoders {
+
+    private static final List<Charset> CHARSETS = TransliteratingASCIIProvider.shared();
+
+    private static final ThreadLocal<CharsetEncoder[]> ENCODERS =
+            ThreadLocal.withInitial(() -> new CharsetEncoder[CHARSETS.size()]);
+
+    private static final ThreadLocal<CharsetDecoder[]> DECODERS =
+            ThreadLocal.withInitial(() -> new CharsetDecoder[CHARSETS.size()]);
+
+    private static final byte[] ENCODER_REPLACEMENT = {(byte) '?'};
+
+    private static final String DECODER_REPLACEMENT = "\uFFFD";
+
+    private AchCoders() {
+    }
+
+    /**
+     * Borrows the calling thread's encoder for a provider charset.
+     *
+     * @param charset one of the charsets of {@link TransliteratingASCIIProvider}
+     * @return the encoder, ready to use
+     * @throws IllegalArgumentException if the charset does not come from {@link TransliteratingASCIIProvider}
+     */
+    public static CharsetEncoder encoder(final Charset charset) {
+        final int index = indexOf(charset);
+        final CharsetEncoder[] encoders = ENCODERS.get();
+        CharsetEncoder encoder = encoders[index];
+        if (encoder == null) {
+            encoder = charset.newEncoder();
+            encoders[index] = encoder;
+            return encoder;
+        }
+        encoder.reset();
+        if (encoder.malformedInputAction() != CodingErrorAction.REPORT) {
+            encoder.onMalformedInput(CodingErrorAction.REPORT);
+        }
+        if (encoder.unmappableCharacterAction() != CodingErrorAction.REPORT) {
+            encoder.onUnmappableCharacter(CodingErrorAction.REPORT);
+        }
+        if (!((TransliteratingASCII.Replacement) encoder).isDefaultReplacement()) {
+            encoder.replaceWith(ENCODER_REPLACEMENT);
+        }
+        return encoder;
+    }
+
+    /**
+     * Borrows the calling thread's encoder for a provider charset.
+     *
+     * @param charsetName the name or alias of one of the charsets of {@link TransliteratingASCIIProvider}
+     * @return the encoder, ready to use
+     * @throws IllegalArgumentException if the provider has no charset by that name
+     */
+    public static CharsetEncoder encoder(final String charsetName) {
+        return encoder(charsetFor(charsetName));
+    }
+
+    /**
+     * Borrows the calling thread's decoder for a provider charset.
+     *
+     * @param charset one of the charsets of {@link TransliteratingASCIIProvider}
+     * @return the decoder, ready to use
+     * @throws IllegalArgumentException if the charset does not come from {@link TransliteratingASCIIProvider}
+     */
+    public static CharsetDecoder decoder(final Charset charset) {
+        final int index = indexOf(charset);
+        final CharsetDecoder[] decoders = DECODERS.get();
+        CharsetDecoder decoder = decoders[index];
+        if (decoder == null) {
+            decoder = charset.newDecoder();
+            decoders[index] = decoder;
+            return decoder;
+        }
+        decoder.reset();
+        if (decoder.malformedInputAction() != CodingErrorAction.REPORT) {
+            decoder.onMalformedInput(CodingErrorAction.REPORT);
+        }
+        if (decoder.unmappableCharacterAction() != CodingErrorAction.REPORT) {
+            decoder.onUnmappableCharacter(CodingErrorAction.REPORT);
+        }
+        if (!DECODER_REPLACEMENT.equals(decoder.replacement())) {
+            decoder.replaceWith(DECODER_REPLACEMENT);
+        }
+        return decoder;
+    }
+
+    /**
+     * Borrows the calling thread's decoder for a provider charset.
+     *
+     * @param charsetName the name or alias of one of the charsets of {@link TransliteratingASCIIProvider}
+     * @return the decoder, ready to use
+     * @throws IllegalArgumentException if the provider has no charset by that name
+     */
+    public static CharsetDecoder decoder(final String charsetName) {
+        return decoder(charsetFor(charsetName));
+    }
+
+    private static Charset charsetFor(final String charsetName) {
+        final Charset charset = TransliteratingASCIIProvider.lookup(charsetName);
+        if (charset == null) {
+            throw new IllegalArgumentException("Not a provider charset: " + charsetName);
+        }
+        return charset;
+    }
+
+    private static int indexOf(final Charset charset) {
+        for (int i = 0; i < CHARSETS.size(); i++) {
+            if (CHARSETS.get(i) == charset) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Not a provider charset: " + charset);
+    }
+}
@@ -0,0 +1,502 @@
+package com.maybeitssquid.ach;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Checks whole ACH files for bytes that a charset would not decode, without decoding them. The file is memory-mapped
+ * a chunk at a time, and the chunks are checked in parallel on a {@link ForkJoinPool}, so a large file is checked at
+ * close to the speed of the disk rather than that of a single {@code InputStreamReader}.
+ *
+ * <p>A file is read as a sequence of lines, each ended by a line feed or by a carriage return and line feed, with the
+ * last line's terminator optional. Each line holds one or more records of {@value #RECORD_LENGTH} bytes, so a file
+ * without line terminators is read as consecutive fixed-length records, and a line longer than one record continues in
+ * the next. An empty line counts as one record. The line terminators themselves are never reported, but a carriage
+ * return that does not come before a line feed is checked like any other byte.</p>
+ *
+ * <p>Which bytes are allowed is read from the charset's own table each time a file is checked, so a change to the
+ * charset's transliterator applies to the next file. A validator may be used by any number of threads at once.</p>
+ *
+ * <p>Java releases a mapping only when the garbage collector reclaims its buffer, so the mappings of a file outlive
+ * the call that checked it. To keep checking many files, or one very large one, from using up the process's
+ * mappings, the chunks do not each map their own part of the file. The file is mapped in as few windows as Java
+ * allows, one for each 2 GiB, and each chunk reads its part of a window.</p>
+ */
+public final class AchFileValidator {
+
+    /**
+     * Length in bytes of an ACH record, not counting its line terminator.
+     */
+    public static final int RECORD_LENGTH = 94;
+
+    /**
+     * Default number of bytes mapped and checked by each task.
+     */
+    static final int DEFAULT_CHUNK = 8 << 20;
+
+    /**
+     * Largest window, leaving room for the extra byte that each window maps past its last chunk.
+     */
+    private static final long MAX_WINDOW = Integer.MAX_VALUE - 1;
+
+    private static final byte LF = '\n';
+
+    private static final byte CR = '\r';
+
+    private final TransliteratingASCII charset;
+
+    /**
+     * The allowed bytes as last read from the charset, with the range that is checked a word at a time.
+     */
+    private volatile Table table;
+
+    private final ForkJoinPool pool;
+
+    private final int chunk;
+
+    /**
+     * Creates a validator for {@code X-ACH} that runs on the common pool.
+     */
+    public AchFileValidator() {
+        this(TransliteratingASCIIProvider.lookup("X-ACH"));
+    }
+
+    /**
+     * Creates a validator that runs on the common pool.
+     *
+     * @param charset the charset whose decoder decides which bytes are allowed
+     * @throws IllegalArgumentException if the charset is not a {@link TransliteratingASCII}
+     */
+    public AchFileValidator(final Charset charset) {
+        this(charset, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a validator.
+     *
+     * @param charset the charset whose decoder decides which bytes are allowed
+     * @param pool    the pool that checks the chunks of each file
+     * @throws IllegalArgumentException if the charset is not a {@link TransliteratingASCII}
+     */
+    public AchFileValidator(final Charset charset, final ForkJoinPool pool) {
+        this(charset, pool, DEFAULT_CHUNK);
+    }
+
+    AchFileValidator(final Charset charset, final ForkJoinPool pool, final int chunk) {
+        if (!(charset instanceof TransliteratingASCII)) {
+            throw new IllegalArgumentException("Charset " + charset + " does not transliterate to ASCII");
+        }
+        this.charset = (TransliteratingASCII) charset;
+        this.pool = pool;
+        this.chunk = chunk;
+    }
+
+    private Table table() {
+        final TransliteratingASCII.Allowed allowed = charset.allowed();
+        Table cached = this.table;
+        if (cached == null || cached.allowed != allowed) {
+            cached = new Table(allowed);
+            this.table = cached;
+        }
+        return cached;
+    }
+
+    /**
+     * The allowed bytes of a charset, along with the longest range of them that holds no line terminator. The
+     * charset's own identity range may include the terminators, which must be found one byte at a time.
+     */
+    private static final class Table {
+
+        final TransliteratingASCII.Allowed allowed;
+
+        /**
+         * Lowest byte of the longest range of allowed bytes without a line terminator.
+         */
+        final int low;
+
+        /**
+         * Highest byte of the range that starts at {@link #low}.
+         */
+        final int high;
+
+        Table(final TransliteratingASCII.Allowed allowed) {
+            this.allowed = allowed;
+            int bestLow = 1;
+            int bestHigh = 0;
+            for (int b = 0; b < 0x80; b++) {
+                if (allowed.accepts(b) && b != LF && b != CR) {
+                    int end = b;
+                    while (end + 1 < 0x80 && allowed.accepts(end + 1) && end + 1 != LF && end + 1 != CR) {
+                        end++;
+                    }
+                    if (end - b > bestHigh - bestLow) {
+                        bestLow = b;
+                        bestHigh = end;
+                    }
+                    b = end;
+                }
+            }
+            this.low = bestLow;
+            this.high = bestHigh;
+        }
+    }
+
+    /**
+     * Finds every byte in a file that is not allowed.
+     *
+     * @param file the file to check
+     * @return the bad bytes in the order they appear in the file, which is empty if the file is clean
+     * @throws IOException if the file cannot be read
+     */
+    public List<Violation> validate(final Path file) throws IOException {
+        return validate(file, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds the first bytes in a file that are not allowed. The whole file is still read, but a badly damaged file
+     * does not fill the heap with violations.
+     *
+     * @param file  the file to check
+     * @param limit the most violations to return
+     * @return the first bad bytes in the order they appear in the file, which is empty if the file is clean
+     * @throws IOException if the file cannot be read
+     */
+    public List<Violation> validate(final Path file, final int limit) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            final long span = Math.min(chunk, MAX_WINDOW);
+            final long window = MAX_WINDOW / span * span;
+            final Chunk[] chunks = new Chunk[(int) ((size + span - 1) / span)];
+            ByteBuffer mapped = null;
+            long mappedStart = 0;
+            for (int i = 0; i < chunks.length; i++) {
+                final long start = i * span;
+                if (mapped == null || start - mappedStart == window) {
+                    // Map one byte more than the window, when there is one, to tell whether a final carriage return
+                    // ends a line
+                    mappedStart = start;
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, window + 1))
+                            .order(ByteOrder.LITTLE_ENDIAN);
+                }
+                chunks[i] = new Chunk(start, Math.min(size, start + span), limit, mapped, (int) (start - mappedStart));
+            }
+            try {
+                pool.invoke(new Check(channel, table(), chunks, 0, chunks.length));
+            } catch (final UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            // Carry the position in the line from chunk to chunk, placing each violation on the way
+            final List<Violation> violations = new ArrayList<>();
+            long record = 0;
+            long position = 0;
+            for (final Chunk c : chunks) {
+                for (int v = 0; v < c.count && violations.size() < limit; v++) {
+                    final long offset = c.offsets[v];
+                    final long at;
+                    final long line;
+                    if (c.recordsBefore[v] < 0) {
+                        line = record;
+                        at = position + c.positions[v];
+                    } else {
+                        line = record + records(position + c.head) + c.recordsBefore[v];
+                        at = c.positions[v];
+                    }
+                    violations.add(new Violation(offset, line + at / RECORD_LENGTH + 1,
+                            (int) (at % RECORD_LENGTH) + 1, c.values[v] & 0xFF));
+                }
+                if (c.terminated) {
+                    record += records(position + c.head) + c.records;
+                    position = c.tail;
+                } else {
+                    position += c.head;
+                }
+            }
+            return Collections.unmodifiableList(violations);
+        }
+    }
+
+    /**
+     * Counts the records in a line.
+     *
+     * @param length the length of the line, not counting its terminator
+     * @return the number of records, which is one for an empty line
+     */
+    private static long records(final long length) {
+        return length == 0 ? 1 : (length + RECORD_LENGTH - 1) / RECORD_LENGTH;
+    }
+
+    /**
+     * What one task found in its part of the file. The task cannot know where in a line its chunk starts, so it
+     * measures everything before its first line terminator from the start of the chunk, and everything after from
+     * the start of that line.
+     */
+    private static final class Chunk {
+
+        final long start;
+
+        final long end;
+
+        final int limit;
+
+        /**
+         * The mapped window that holds the chunk, which is shared with other chunks and only read by absolute index.
+         */
+        final ByteBuffer window;
+
+        /**
+         * Index in {@link #window} of the first byte of the chunk.
+         */
+        final int base;
+
+        /**
+         * Whether the chunk holds a line terminator.
+         */
+        boolean terminated;
+
+        /**
+         * Bytes before the first line terminator, or in the whole chunk if there is none.
+         */
+        long head;
+
+        /**
+         * Records in the whole lines between the first and last line terminators.
+         */
+        long records;
+
+        /**
+         * Bytes after the last line terminator.
+         */
+        long tail;
+
+        int count;
+
+        long[] offsets = new long[0];
+
+        /**
+         * For each violation after the first line terminator, the records in whole lines before its line; for each
+         * violation before it, {@code -1}.
+         */
+        long[] recordsBefore = new long[0];
+
+        /**
+         * For each violation, its position in its line, or in the head of the chunk.
+         */
+        long[] positions = new long[0];
+
+        byte[] values = new byte[0];
+
+        Chunk(final long start, final long end, final int limit, final ByteBuffer window, final int base) {
+            this.start = start;
+            this.end = end;
+            this.limit = limit;
+            this.window = window;
+            this.base = base;
+        }
+
+        void add(final long offset, final long before, final long position, final byte value) {
+            if (count == limit) {
+                return;
+            }
+            if (count == offsets.length) {
+                final int grown = Math.max(16, count * 2);
+                offsets = Arrays.copyOf(offsets, grown);
+                recordsBefore = Arrays.copyOf(recordsBefore, grown);
+                positions = Arrays.copyOf(positions, grown);
+                values = Arrays.copyOf(values, grown);
+            }
+            offsets[count] = offset;
+            recordsBefore[count] = before;
+            positions[count] = position;
+            values[count] = value;
+            count++;
+        }
+    }
+
+    private static final class Check extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel channel;
+
+        private final transient Table table;
+
+        private final transient Chunk[] chunks;
+
+        private final int from;
+
+        private final int to;
+
+        Check(final FileChannel channel, final Table table, final Chunk[] chunks, final int from, final int to) {
+            this.channel = channel;
+            this.table = table;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                final int middle = (from + to) >>> 1;
+                invokeAll(new Check(channel, table, chunks, from, middle), new Check(channel, table, chunks, middle, to));
+            } else if (to > from) {
+                try {
+                    scan(chunks[from]);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        private void scan(final Chunk c) throws IOException {
+            // Read one byte more than the chunk, when there is one, to tell whether a final carriage return ends a line
+            final int length = (int) (c.end - c.start);
+            final ByteBuffer mapped = c.window.duplicate();
+            mapped.position(c.base).limit(Math.min(mapped.limit(), c.base + length + 1));
+            final ByteBuffer slice = mapped.slice().order(ByteOrder.LITTLE_ENDIAN);
+            final TransliteratingASCII.Allowed allowed = table.allowed;
+            final int low = table.low;
+            final int high = table.high;
+            final boolean words = low <= high;
+
+            // A line feed that finishes the carriage return at the end of the previous chunk was taken with it
+            final int skip = c.start > 0 && length > 0 && slice.get(0) == LF && endsWithCR(c) ? 1 : 0;
+
+            boolean terminated = false;
+            long before = -1;
+            long lineStart = skip;
+            int i = skip;
+            while (i < length) {
+                if (words && i + Long.BYTES <= length
+                        && TransliteratingASCII.isWithin(slice.getLong(i), low, high)) {
+                    i += Long.BYTES;
+                    continue;
+                }
+                final int end = Math.min(i + Long.BYTES, length);
+                for (; i < end; i++) {
+                    final byte b = slice.get(i);
+                    if (b == LF || b == CR && i + 1 < slice.limit() && slice.get(i + 1) == LF) {
+                        final long line = i - lineStart;
+                        if (!terminated) {
+                            terminated = true;
+                            c.head = line;
+                            before = 0;
+                        } else {
+                            before += records(line);
+                        }
+                        if (b == CR) {
+                            // Take the line feed with it, even when it belongs to the next chunk
+                            i++;
+                        }
+                        lineStart = i + 1;
+                    } else if (!allowed.accepts(b)) {
+                        c.add(c.start + i, before, i - lineStart, b);
+                    }
+                }
+            }
+            c.terminated = terminated;
+            if (terminated) {
+                c.records = before;
+                c.tail = Math.max(0, length - lineStart);
+            } else {
+                c.head = length - skip;
+            }
+        }
+
+        /**
+         * Tells whether the byte before a chunk is a carriage return, reading it from the file only when the chunk
+         * starts a window.
+         */
+        private boolean endsWithCR(final Chunk c) throws IOException {
+            if (c.base > 0) {
+                return c.window.get(c.base - 1) == CR;
+            }
+            final ByteBuffer previous = ByteBuffer.allocate(1);
+            channel.read(previous, c.start - 1);
+            return previous.get(0) == CR;
+        }
+    }
+
+    /**
+     * A byte that is not allowed.
+     */
+    public static final class Violation {
+
+        private final long offset;
+
+        private final long record;
+
+        private final int column;
+
+        private final int value;
+
+        Violation(final long offset, final long record, final int column, final int value) {
+            this.offset = offset;
+            this.record = record;
+            this.column = column;
+            this.value = value;
+        }
+
+        /**
+         * @return the position of the byte in the file, counting from zero
+         */
+        public long offset() {
+            return offset;
+        }
+
+        /**
+         * @return the record that holds the byte, counting from one
+         */
+        public long record() {
+            return record;
+        }
+
+        /**
+         * @return the position of the byte in its record, counting from one
+         */
+        public int column() {
+            return column;
+        }
+
+        /**
+         * @return the byte, from {@code 0x00} to {@code 0xFF}
+         */
+        public int value() {
+            return value;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Violation)) {
+                return false;
+            }
+            final Violation other = (Violation) o;
+            return offset == other.offset && record == other.record && column == other.column
+                    && value == other.value;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(offset) * 31 + value;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Violation[offset=%d, record=%d, column=%d, value=0x%02X]",
+                    offset, record, column, value);
+        }
+    }
+}
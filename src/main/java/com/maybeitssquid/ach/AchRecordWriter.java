@@ -0,0 +1,336 @@
+package com.maybeitssquid.ach;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes an ACH file a record at a time. Fields are transliterated straight into a reusable record of
+ * {@value #RECORD_LENGTH} bytes, which is padded with spaces or truncated to exactly that length when it ends, so a
+ * field that transliterates to more or fewer bytes than it has characters cannot shift the fields after it. Finished
+ * records collect in a direct buffer that is written to the channel in large batches. Once the writer holds its
+ * buffers, writing a record allocates nothing.
+ *
+ * <p>The encoder replaces anything it cannot transliterate, as {@code OutputStreamWriter} would. With the default
+ * {@code X-ACH} charset that includes line feeds and carriage returns, so the contents of a field can never break a
+ * record in two.</p>
+ *
+ * <p>With a length-preserving charset such as {@code X-ACH-Fixed}, each field is written in one pass by
+ * {@link LengthPreserving#field(CharSequence, byte[], int, int)} instead of going through the encoder, and anything
+ * that cannot be transliterated, control characters included, becomes the charset's filler.</p>
+ *
+ * <p>Closing the writer fills out the last block of {@value #BLOCKING_FACTOR} records with records of all
+ * {@code 9}s, as NACHA requires. A writer must not be used by more than one thread at a time.</p>
+ */
+public final class AchRecordWriter implements Flushable, Closeable {
+
+    /**
+     * Length in bytes of an ACH record, not counting its line terminator.
+     */
+    public static final int RECORD_LENGTH = AchFileValidator.RECORD_LENGTH;
+
+    /**
+     * Number of records in a block. The file is filled out to a whole number of blocks.
+     */
+    public static final int BLOCKING_FACTOR = 10;
+
+    /**
+     * Default size in bytes of the buffer that batches records on their way to the channel.
+     */
+    static final int DEFAULT_BATCH = 64 << 10;
+
+    private static final byte[] FILL = filled((byte) '9');
+
+    private static final byte[] BLANK = filled((byte) ' ');
+
+    /**
+     * What ends each record.
+     */
+    public enum Terminator {
+        /**
+         * Records follow one another with nothing between them.
+         */
+        NONE(""),
+
+        /**
+         * Each record ends with a line feed.
+         */
+        LF("\n"),
+
+        /**
+         * Each record ends with a carriage return and a line feed.
+         */
+        CRLF("\r\n");
+
+        private final byte[] bytes;
+
+        Terminator(final String bytes) {
+            this.bytes = bytes.getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final WritableByteChannel channel;
+
+    private final CharsetEncoder encoder;
+
+    /**
+     * The charset's transliterator if it writes one byte per code point, which lets fields skip the encoder.
+     */
+    private final LengthPreserving fixed;
+
+    private final byte[] terminator;
+
+    private final byte[] record = new byte[RECORD_LENGTH];
+
+    private final ByteBuffer recordOut = ByteBuffer.wrap(record);
+
+    /**
+     * Characters staged from a field on their way through the encoder, since wrapping each field in a
+     * {@link CharBuffer} would allocate.
+     */
+    private final char[] staged = new char[RECORD_LENGTH];
+
+    private final CharBuffer stagedIn = CharBuffer.wrap(staged);
+
+    private final ByteBuffer batch;
+
+    private int column;
+
+    private boolean started;
+
+    private long records;
+
+    private boolean closed;
+
+    /**
+     * Creates a writer that encodes with {@code X-ACH} and ends each record with a line feed.
+     *
+     * @param channel the channel to write the file to
+     */
+    public AchRecordWriter(final WritableByteChannel channel) {
+        this(channel, TransliteratingASCIIProvider.lookup("X-ACH"), Terminator.LF);
+    }
+
+    /**
+     * Creates a writer.
+     *
+     * @param channel    the channel to write the file to
+     * @param charset    the charset that transliterates each field
+     * @param terminator what ends each record
+     */
+    public AchRecordWriter(final WritableByteChannel channel, final Charset charset, final Terminator terminator) {
+        this(channel, charset, terminator, DEFAULT_BATCH);
+    }
+
+    AchRecordWriter(final WritableByteChannel channel, final Charset charset, final Terminator terminator,
+                    final int batch) {
+        if (batch < RECORD_LENGTH + terminator.bytes.length) {
+            throw new IllegalArgumentException("Batch of " + batch + " bytes cannot hold a record");
+        }
+        this.channel = channel;
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.fixed = charset instanceof TransliteratingASCII
+                ? ((TransliteratingASCII) charset).lengthPreserving() : null;
+        this.terminator = terminator.bytes;
+        this.batch = ByteBuffer.allocateDirect(batch);
+    }
+
+    private static byte[] filled(final byte value) {
+        final byte[] bytes = new byte[RECORD_LENGTH];
+        Arrays.fill(bytes, value);
+        return bytes;
+    }
+
+    /**
+     * Appends a field to the current record, starting a record if none is in progress. Whatever does not fit in the
+     * rest of the record is dropped.
+     *
+     * @param value the text of the field
+     * @return this writer
+     * @throws IllegalStateException if the writer has been closed
+     */
+    public AchRecordWriter field(final CharSequence value) {
+        if (fixed != null) {
+            start();
+            column += fixed.field(value, record, column, RECORD_LENGTH - column);
+        } else {
+            column = encode(value, RECORD_LENGTH);
+        }
+        return this;
+    }
+
+    /**
+     * Appends a fixed-width field to the current record, starting a record if none is in progress. The field is
+     * padded on the right with spaces or truncated to its width, or to the rest of the record if that is shorter.
+     *
+     * @param value the text of the field
+     * @param width the width of the field in bytes
+     * @return this writer
+     * @throws IllegalArgumentException if the width is negative
+     * @throws IllegalStateException    if the writer has been closed
+     */
+    public AchRecordWriter field(final CharSequence value, final int width) {
+        if (width < 0) {
+            throw new IllegalArgumentException("Field width " + width + " is negative");
+        }
+        final int end = (int) Math.min(RECORD_LENGTH, (long) column + width);
+        if (fixed != null) {
+            start();
+            fixed.field(value, record, column, end - column);
+        } else {
+            final int written = encode(value, end);
+            System.arraycopy(BLANK, 0, record, written, end - written);
+        }
+        column = end;
+        return this;
+    }
+
+    /**
+     * Writes a whole record.
+     *
+     * @param value the text of the record
+     * @return this writer
+     * @throws IOException           if the channel cannot be written
+     * @throws IllegalStateException if the writer has been closed
+     */
+    public AchRecordWriter record(final CharSequence value) throws IOException {
+        return field(value).endRecord();
+    }
+
+    /**
+     * Ends the current record, padding it with spaces to {@value #RECORD_LENGTH} bytes, and adds the line
+     * terminator. A record with no fields is written as all spaces.
+     *
+     * @return this writer
+     * @throws IOException           if the channel cannot be written
+     * @throws IllegalStateException if the writer has been closed
+     */
+    public AchRecordWriter endRecord() throws IOException {
+        checkOpen();
+        System.arraycopy(BLANK, 0, record, column, RECORD_LENGTH - column);
+        append(record);
+        records++;
+        column = 0;
+        started = false;
+        return this;
+    }
+
+    /**
+     * Returns the number of records ended so far, not counting the records that fill out the last block.
+     *
+     * @return the number of records
+     */
+    public long records() {
+        return records;
+    }
+
+    /**
+     * Writes the records batched so far to the channel. The current record, if any, is not written until it ends.
+     *
+     * @throws IOException if the channel cannot be written
+     */
+    @Override
+    public void flush() throws IOException {
+        batch.flip();
+        while (batch.hasRemaining()) {
+            channel.write(batch);
+        }
+        batch.clear();
+    }
+
+    /**
+     * Ends the current record, if one has been started, fills out the last block with records of all {@code 9}s,
+     * writes everything to the channel and closes it. Closing a closed writer has no effect.
+     *
+     * @throws IOException if the channel cannot be written or closed
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            if (started) {
+                endRecord();
+            }
+            for (long filled = records; filled % BLOCKING_FACTOR != 0; filled++) {
+                append(FILL);
+            }
+            flush();
+        } finally {
+            try {
+                channel.close();
+            } finally {
+                closed = true;
+            }
+        }
+    }
+
+    private void start() {
+        checkOpen();
+        started = true;
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Writer is closed");
+        }
+    }
+
+    private void append(final byte[] bytes) throws IOException {
+        if (batch.remaining() < bytes.length + terminator.length) {
+            flush();
+        }
+        batch.put(bytes).put(terminator);
+    }
+
+    /**
+     * Transliterates a field into the record from the current column, stopping at the end of the field.
+     *
+     * @param value the text of the field
+     * @param end   the position in the record just past the last byte that may be written
+     * @return the position in the record just past the last byte written
+     */
+    private int encode(final CharSequence value, final int end) {
+        start();
+        recordOut.limit(end).position(column);
+        encoder.reset();
+        stagedIn.clear();
+        final int length = value.length();
+        int read = 0;
+        while (true) {
+            final int n = Math.min(stagedIn.remaining(), length - read);
+            final int at = stagedIn.position();
+            if (value instanceof String) {
+                ((String) value).getChars(read, read + n, staged, at);
+            } else {
+                for (int i = 0; i < n; i++) {
+                    staged[at + i] = value.charAt(read + i);
+                }
+            }
+            read += n;
+            stagedIn.position(at + n).flip();
+            final CoderResult result = encoder.encode(stagedIn, recordOut, read == length);
+            // Keep any character the encoder left behind, such as a high surrogate waiting for its pair
+            stagedIn.compact();
+            if (result.isOverflow()) {
+                break;
+            } else if (read == length) {
+                encoder.flush(recordOut);
+                break;
+            }
+        }
+        return recordOut.position();
+    }
+}
@@ -0,0 +1,48 @@
+package com.maybeitssquid.ach;
+
+/**
+ * Copies runs of characters that a charset passes through unchanged straight from the encoder input to its output,
+ * without consulting the transliterator for each character. This is the portable implementation. A multi-release JAR
+ * replaces it on newer JDKs with one that checks and narrows many characters at once using the Vector API.
+ */
+final class AsciiRuns {
+
+    private AsciiRuns() {
+    }
+
+    /**
+     * Tells whether {@link #narrow(char[], int, byte[], int, int, int, int)} checks many characters at once, which
+     * makes it faster than handing long runs to {@link Latin1Runs}.
+     *
+     * @return {@code false}, because this implementation checks one character at a time
+     */
+    static boolean isVectorized() {
+        return false;
+    }
+
+    /**
+     * Narrows the leading characters of {@code src} that fall within {@code [low, high]} into bytes.
+     *
+     * @param src    the characters to encode
+     * @param sp     the position in {@code src} of the first character
+     * @param dst    the destination for the encoded bytes
+     * @param dp     the position in {@code dst} of the first byte to write
+     * @param length the most characters to copy, which must fit in both arrays
+     * @param low    the lowest character that encodes as itself
+     * @param high   the highest character that encodes as itself
+     * @return the number of characters copied, which stops short of {@code length} at the first character out of range
+     */
+    static int narrow(final char[] src, final int sp, final byte[] dst, final int dp, final int length,
+                      final int low, final int high) {
+        int i = 0;
+        while (i < length) {
+            final char c = src[sp + i];
+            if (c < low || c > high) {
+                break;
+            }
+            dst[dp + i] = (byte) c;
+            i++;
+        }
+        return i;
+    }
+}
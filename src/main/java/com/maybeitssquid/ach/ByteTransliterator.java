@@ -0,0 +1,46 @@
+package com.maybeitssquid.ach;
+
+import java.util.function.IntFunction;
+
+/**
+ * Transliterator that writes the ASCII bytes for a code point straight into an encoder's output. This is what
+ * {@link TransliteratingASCII} calls for every code point outside the identity range, so it hands back nothing that a
+ * caller could hold on to or modify, and nothing for the encoder to check or narrow afterwards.
+ *
+ * <p>{@link Filtering} and its subclasses implement this alongside {@link IntFunction}, as does
+ * {@link CompiledTransliterator}. Any other {@code IntFunction<char[]>} can be adapted with {@link #of(IntFunction)}.</p>
+ */
+@FunctionalInterface
+public interface ByteTransliterator {
+
+    /**
+     * Result of {@link #transliterate(int, byte[], int, int)} for a code point that has no ASCII transliteration.
+     */
+    int UNMAPPABLE = -1;
+
+    /**
+     * Writes the ASCII transliteration of a code point.
+     *
+     * @param codepoint the code point to transliterate
+     * @param dst       the destination for the bytes
+     * @param offset    the position in {@code dst} of the first byte to write
+     * @param limit     the position in {@code dst} just past the last byte that may be written
+     * @return the number of bytes written, which is at least one; {@link #UNMAPPABLE} if the code point transliterates
+     * to nothing or to anything outside ASCII; or, if the transliteration does not fit before {@code limit}, the
+     * bitwise complement of its length, with nothing written
+     */
+    int transliterate(int codepoint, byte[] dst, int offset, int limit);
+
+    /**
+     * Adapts a transliterator that returns characters.
+     *
+     * @param transliterator the transliterator to adapt
+     * @return a transliterator that writes the same characters as bytes
+     */
+    static ByteTransliterator of(final IntFunction<char[]> transliterator) {
+        if (transliterator instanceof ByteTransliterator) {
+            return (ByteTransliterator) transliterator;
+        }
+        return (codepoint, dst, offset, limit) -> Filtering.narrow(transliterator.apply(codepoint), dst, offset, limit);
+    }
+}
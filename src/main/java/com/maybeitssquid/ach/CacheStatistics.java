@@ -0,0 +1,65 @@
+package com.maybeitssquid.ach;
+
+/**
+ * Snapshot of the counters kept by the memo in {@link Normalizing}. Counters only grow, so the difference between two
+ * snapshots describes the lookups made in between.
+ */
+public final class CacheStatistics {
+
+    private final long hits;
+
+    private final long misses;
+
+    private final long evictions;
+
+    private final long capacity;
+
+    CacheStatistics(final long hits, final long misses, final long evictions, final long capacity) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the number of lookups answered from the cache
+     */
+    public long hits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of lookups that had to compute a transliteration
+     */
+    public long misses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of 256 code point pages discarded to stay within the bound
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the number of code points that the resident pages can hold
+     */
+    public long capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the fraction of lookups that were hits, or {@code 0} if there have been no lookups
+     */
+    public double hitRate() {
+        final long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatistics[hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+                + ", capacity=" + capacity + ']';
+    }
+}
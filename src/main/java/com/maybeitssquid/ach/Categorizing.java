@@ -1,5 +1,7 @@
 package com.maybeitssquid.ach;
 
+import java.text.Normalizer;
+
 import static java.lang.Character.*;
 
 public class Categorizing extends Normalizing {
@@ -12,6 +14,26 @@ public class Categorizing extends Normalizing {
         super();
     }
 
+    /**
+     * Creates a transliterator with a bounded memo.
+     *
+     * @param cacheEntries the approximate number of code points to memoize, as described by
+     *                     {@link Normalizing#Normalizing(Normalizer.Form, int)}
+     */
+    public Categorizing(final int cacheEntries) {
+        super(Normalizer.Form.NFKD, cacheEntries);
+    }
+
+    /**
+     * Creates a transliterator that shares the memo of another, as described by
+     * {@link Normalizing#Normalizing(Normalizing)}.
+     *
+     * @param shared the transliterator whose memo to share
+     */
+    Categorizing(final Categorizing shared) {
+        super(shared);
+    }
+
     @Override
     public Categorizing encode(final int codepoint, final char as) {
         super.encode(codepoint, as);
@@ -42,6 +64,18 @@ public class Categorizing extends Normalizing {
         return this;
     }
 
+    @Override
+    public Categorizing prefetchBlocks() {
+        super.prefetchBlocks();
+        return this;
+    }
+
+    @Override
+    public Categorizing profile(final WorkloadProfile profile) {
+        super.profile(profile);
+        return this;
+    }
+
     public char[] newLine() {
         return System.lineSeparator().toCharArray();
     }
@@ -49,7 +83,7 @@ public class Categorizing extends Normalizing {
     @Override
     protected char[] dispatch(final int codepoint) {
         if (codepoint < 0x80) {
-            return ASCII[codepoint];
+            return ascii()[codepoint];
         } else {
             switch (Character.getType(codepoint)) {
                 case UPPERCASE_LETTER:
@@ -95,7 +129,7 @@ public class Categorizing extends Normalizing {
 
     protected char[] uppercase(@SuppressWarnings("unused") final int codepoint) {
         if (codepoint < 0x80 && Character.isUpperCase(codepoint)) {
-            return ASCII[codepoint];
+            return ascii()[codepoint];
         } else {
             return NOTHING;
         }
@@ -103,7 +137,7 @@ public class Categorizing extends Normalizing {
 
     protected char[] lowercase(@SuppressWarnings("unused") final int codepoint) {
         if (codepoint < 0x80 && Character.isLowerCase(codepoint)) {
-            return ASCII[codepoint];
+            return ascii()[codepoint];
         } else {
             return NOTHING;
         }
@@ -116,14 +150,14 @@ public class Categorizing extends Normalizing {
     protected char[] decimalDigit(final int codepoint) {
         final int value = Character.getNumericValue(codepoint);
         if (value >= 0) {
-            return ASCII['0' + Character.getNumericValue(codepoint)];
+            return ascii()['0' + Character.getNumericValue(codepoint)];
         } else {
             return NOTHING;
         }
     }
 
     protected char[] spaceSeparator(@SuppressWarnings("unused") final int codepoint) {
-        return ASCII[' '];
+        return ascii()[' '];
     }
 
     protected char[] lineSeparator(@SuppressWarnings("unused") final int codepoint) {
@@ -139,19 +173,19 @@ public class Categorizing extends Normalizing {
     }
 
     protected char[] dashPunctuation(@SuppressWarnings("unused") final int codepoint) {
-        return ASCII['-'];
+        return ascii()['-'];
     }
 
     protected char[] startPunctuation(@SuppressWarnings("unused") final int codepoint) {
-        return ASCII['('];
+        return ascii()['('];
     }
 
     protected char[] endPunctuation(@SuppressWarnings("unused") final int codepoint) {
-        return ASCII[')'];
+        return ascii()[')'];
     }
 
     protected char[] connectorPunctuation(@SuppressWarnings("unused") final int codepoint) {
-        return ASCII['_'];
+        return ascii()['_'];
     }
 
     protected char[] otherPunctuation(@SuppressWarnings("unused") final int codepoint) {
@@ -167,10 +201,10 @@ public class Categorizing extends Normalizing {
     }
 
     protected char[] otherSymbol(final int codepoint) {
-        return codepoint == UNICODE_REPLACEMENT ? ASCII['?'] : NOTHING;
+        return codepoint == UNICODE_REPLACEMENT ? ascii()['?'] : NOTHING;
     }
 
     protected char[] quotePunctuation(@SuppressWarnings("unused") final int codepoint) {
-        return ASCII['"'];
+        return ascii()['"'];
     }
 }
@@ -0,0 +1,243 @@
+package com.maybeitssquid.ach;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent memo of transliterations keyed directly by code point. The code space is split into pages of 256 code
+ * points that are allocated on first use, so a lookup is two array loads with no hashing and no {@code Integer}
+ * boxing. Reads never lock, and inserts publish with a compare-and-set so that concurrent encoders sharing one
+ * {@link java.nio.charset.Charset} always agree on a single cached instance.
+ *
+ * <p>The cache can be bounded. Memory is allocated a page at a time, so the bound is enforced a page at a time: once
+ * more pages are resident than the bound allows, a CLOCK sweep discards pages that have not been read since the hand
+ * last passed them. A page that is read constantly, such as the one holding the Latin-1 letters, keeps its reference
+ * bit set and stays resident while a scan across the rest of the code space cycles through the remaining pages.</p>
+ */
+final class CodePointCache {
+
+    private static final int PAGE_SHIFT = 8;
+
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private static final int PAGES = (Character.MAX_CODE_POINT + 1) >>> PAGE_SHIFT;
+
+    private final AtomicReferenceArray<AtomicReferenceArray<char[]>> pages = new AtomicReferenceArray<>(PAGES);
+
+    private final int maxPages;
+
+    private final AtomicInteger resident = new AtomicInteger();
+
+    /**
+     * CLOCK reference bits, one per page. These are plain writes: a lost update only costs a page one extra trip
+     * around the clock, which is cheaper than making every cache hit a volatile write.
+     */
+    private final boolean[] referenced = new boolean[PAGES];
+
+    private int hand;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Creates a cache that grows to cover the whole code space if asked to.
+     */
+    CodePointCache() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a cache that holds at most about {@code maxEntries} code points.
+     *
+     * @param maxEntries the bound, which is rounded up to a whole number of 256 code point pages
+     * @throws IllegalArgumentException if {@code maxEntries} is not positive
+     */
+    CodePointCache(final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache bound must be positive: " + maxEntries);
+        }
+        this.maxPages = (int) Math.min(PAGES, ((long) maxEntries + PAGE_MASK) >>> PAGE_SHIFT);
+    }
+
+    /**
+     * Returns the cached value for a code point, counting the lookup as a hit or a miss.
+     *
+     * @param codepoint the code point to look up
+     * @return the cached value, or {@code null} if there is none
+     */
+    char[] get(final int codepoint) {
+        if (codepoint < 0 || codepoint > Character.MAX_CODE_POINT) {
+            return null;
+        }
+        final int index = codepoint >>> PAGE_SHIFT;
+        final AtomicReferenceArray<char[]> page = pages.getAcquire(index);
+        final char[] value = page == null ? null : page.getAcquire(codepoint & PAGE_MASK);
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+            if (!referenced[index]) {
+                referenced[index] = true;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the cached value for a code point without counting the lookup or marking its page as recently used.
+     *
+     * @param codepoint the code point to look up
+     * @return the cached value, or {@code null} if there is none
+     */
+    char[] peek(final int codepoint) {
+        if (codepoint < 0 || codepoint > Character.MAX_CODE_POINT) {
+            return null;
+        }
+        final AtomicReferenceArray<char[]> page = pages.getAcquire(codepoint >>> PAGE_SHIFT);
+        return page == null ? null : page.getAcquire(codepoint & PAGE_MASK);
+    }
+
+    /**
+     * Caches a value unless another thread has already cached one for the same code point.
+     *
+     * @param codepoint the code point to cache
+     * @param value     the computed value
+     * @return the value that is cached after the call, which is {@code value} unless another thread won the race
+     */
+    char[] putIfAbsent(final int codepoint, final char[] value) {
+        final AtomicReferenceArray<char[]> page = page(codepoint);
+        final int index = codepoint & PAGE_MASK;
+        if (page.compareAndSet(index, null, value)) {
+            return value;
+        } else {
+            final char[] existing = page.getAcquire(index);
+            return existing == null ? putIfAbsent(codepoint, value) : existing;
+        }
+    }
+
+    /**
+     * Caches the values for a run of code points within one page, keeping any values already cached. Lookups are not
+     * counted, so filling the cache ahead of demand does not skew its statistics.
+     *
+     * @param first  the first code point of the run, which must be at the start of a page
+     * @param values the values in code point order, with {@code null} for code points to leave alone
+     */
+    void fill(final int first, final char[][] values) {
+        if ((first & PAGE_MASK) != 0 || values.length > PAGE_SIZE) {
+            throw new IllegalArgumentException("Not a page: " + first + " + " + values.length);
+        }
+        final AtomicReferenceArray<char[]> page = page(first);
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                page.compareAndSet(i, null, values[i]);
+            }
+        }
+    }
+
+    /**
+     * Caches a value, replacing any previous value for the same code point.
+     *
+     * @param codepoint the code point to cache
+     * @param value     the value
+     */
+    void put(final int codepoint, final char[] value) {
+        page(codepoint).setRelease(codepoint & PAGE_MASK, value);
+    }
+
+    /**
+     * Discards any cached value for a code point.
+     *
+     * @param codepoint the code point to discard
+     */
+    void remove(final int codepoint) {
+        final AtomicReferenceArray<char[]> page = pages.getAcquire(codepoint >>> PAGE_SHIFT);
+        if (page != null) {
+            page.setRelease(codepoint & PAGE_MASK, null);
+        }
+    }
+
+    /**
+     * Discards the cached value for a code point if it is still the given one.
+     *
+     * @param codepoint the code point to discard
+     * @param expected  the value to discard
+     */
+    void remove(final int codepoint, final char[] expected) {
+        final AtomicReferenceArray<char[]> page = pages.getAcquire(codepoint >>> PAGE_SHIFT);
+        if (page != null) {
+            page.compareAndSet(codepoint & PAGE_MASK, expected, null);
+        }
+    }
+
+    /**
+     * Discards every cached value. Lookups and inserts may run concurrently; a value inserted into a page as it is
+     * discarded is lost along with the page.
+     */
+    synchronized void clear() {
+        for (int i = 0; i < PAGES; i++) {
+            if (pages.getAndSet(i, null) != null) {
+                resident.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot of the counters.
+     *
+     * @return the number of hits, misses and evictions so far
+     */
+    CacheStatistics statistics() {
+        return new CacheStatistics(hits.sum(), misses.sum(), evictions.sum(), resident.get() * PAGE_SIZE);
+    }
+
+    private AtomicReferenceArray<char[]> page(final int codepoint) {
+        if (codepoint < 0 || codepoint > Character.MAX_CODE_POINT) {
+            throw new IllegalArgumentException("Not a valid code point: " + codepoint);
+        }
+        final int index = codepoint >>> PAGE_SHIFT;
+        final AtomicReferenceArray<char[]> page = pages.getAcquire(index);
+        if (page != null) {
+            return page;
+        }
+        final AtomicReferenceArray<char[]> created = new AtomicReferenceArray<>(PAGE_SIZE);
+        if (!pages.compareAndSet(index, null, created)) {
+            final AtomicReferenceArray<char[]> existing = pages.getAcquire(index);
+            return existing == null ? page(codepoint) : existing;
+        }
+        if (resident.incrementAndGet() > maxPages) {
+            evict(index);
+        }
+        return created;
+    }
+
+    /**
+     * Advances the clock hand, clearing reference bits, until enough unreferenced pages have been discarded to get
+     * back within the bound. Every page that is passed over loses its bit, so this makes at most two sweeps. A new page
+     * starts without its bit set, so a page filled by a one-off scan is the first to go, but the page that prompted the
+     * sweep is spared so that the value about to be stored in it is not lost at once.
+     *
+     * @param created the page that was just allocated
+     */
+    private synchronized void evict(final int created) {
+        while (resident.get() > maxPages) {
+            final int index = hand;
+            hand = index + 1 == PAGES ? 0 : index + 1;
+            if (index == created || pages.getAcquire(index) == null) {
+                continue;
+            }
+            if (referenced[index]) {
+                referenced[index] = false;
+            } else {
+                pages.setRelease(index, null);
+                resident.decrementAndGet();
+                evictions.increment();
+            }
+        }
+    }
+}
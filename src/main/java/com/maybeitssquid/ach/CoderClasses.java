@@ -0,0 +1,47 @@
+package com.maybeitssquid.ach;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+/**
+ * Supplies the classes of the encoders and decoders that {@link TransliteratingASCII} creates. This is the portable
+ * implementation, which shares one encoder class and one decoder class among every charset. The Java 17
+ * implementation from the multi-release JAR gives each charset copies of its own.
+ */
+final class CoderClasses {
+
+    private CoderClasses() {
+    }
+
+    /**
+     * Finds the constructor of the coder class to use for a charset.
+     *
+     * @param lookup   a lookup on the charset class, with private access to {@code template}
+     * @param template the coder class, whose constructor takes the charset as its only argument
+     * @param bound    the values that the coder class reads through {@link #bound(MethodHandles.Lookup, int)}, or
+     *                 {@code null} to use {@code template} itself
+     * @return the constructor
+     */
+    static MethodHandle constructor(final MethodHandles.Lookup lookup, final Class<?> template,
+                                    final List<?> bound) {
+        try {
+            return lookup.findConstructor(template, MethodType.methodType(void.class, lookup.lookupClass()));
+        } catch (final ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Gets a value bound to a coder class by {@link #constructor(MethodHandles.Lookup, Class, List)}.
+     *
+     * @param lookup the coder class's own lookup
+     * @param index  the position of the value in the list that was bound
+     * @param <T>    the type of the value
+     * @return the value, which is always {@code null} here because the classes are shared
+     */
+    static <T> T bound(final MethodHandles.Lookup lookup, final int index) {
+        return null;
+    }
+}
@@ -0,0 +1,288 @@
+package com.maybeitssquid.ach;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes records of a {@link RecordLayout} straight into a slot of a {@code byte[]} or {@link ByteBuffer}. Numbers are
+ * written digit by digit and text is transliterated with the charset's own tables, so no {@code String} or
+ * {@code char[]} is made along the way, and writing a record allocates nothing.
+ *
+ * <p>A record is written by {@linkplain #blank(byte[], int) blanking} its slot, which writes the constants and the
+ * padding of every field, and then writing each field through the {@link Field} that {@link #field(String)} finds
+ * for it. Fields are looked up once, ahead of time, so that the per-record path only writes. A field is always
+ * written whole, justified and padded to its width, so fields can be written in any order and rewritten.</p>
+ *
+ * <p>Text that the charset cannot transliterate is replaced with {@code ?}, and a combining mark that follows another
+ * character is dropped, as the encoder does by default. A transliteration that does not fit in the rest of a field
+ * ends the field there. A compiled layout is immutable and may be shared by any number of threads.</p>
+ */
+public final class CompiledRecordLayout {
+
+    private static final byte REPLACEMENT = '?';
+
+    /**
+     * Staging for fields bound for a buffer with no array behind it.
+     */
+    private static final ThreadLocal<byte[]> STAGING =
+            ThreadLocal.withInitial(() -> new byte[RecordLayout.RECORD_LENGTH]);
+
+    private final TransliteratingASCII charset;
+
+    private final byte[] template;
+
+    private final Map<String, Field> fields = new HashMap<>();
+
+    CompiledRecordLayout(final TransliteratingASCII charset, final byte[] template,
+                         final List<RecordLayout.Field> declared) {
+        this.charset = charset;
+        this.template = template;
+        for (final RecordLayout.Field field : declared) {
+            fields.put(field.name, new Field(field));
+        }
+    }
+
+    /**
+     * Finds a field by the name it was declared with.
+     *
+     * @param name the name of the field
+     * @return the field
+     * @throws IllegalArgumentException if the layout has no field by that name
+     */
+    public Field field(final String name) {
+        final Field field = fields.get(name);
+        if (field == null) {
+            throw new IllegalArgumentException("No field named " + name);
+        }
+        return field;
+    }
+
+    /**
+     * Writes the constants of the layout and the padding of every field into a slot.
+     *
+     * @param dst    the array that holds the slot
+     * @param offset the position in {@code dst} of the first byte of the record
+     */
+    public void blank(final byte[] dst, final int offset) {
+        System.arraycopy(template, 0, dst, offset, template.length);
+    }
+
+    /**
+     * Writes the constants of the layout and the padding of every field into a slot. The buffer's position is not
+     * changed.
+     *
+     * @param dst    the buffer that holds the slot
+     * @param offset the index in {@code dst} of the first byte of the record
+     */
+    public void blank(final ByteBuffer dst, final int offset) {
+        if (dst.hasArray()) {
+            blank(dst.array(), dst.arrayOffset() + offset);
+        } else {
+            for (int i = 0; i < template.length; i++) {
+                dst.put(offset + i, template[i]);
+            }
+        }
+    }
+
+    /**
+     * Counts the decimal digits of a number that is not negative.
+     */
+    private static int digits(final long value) {
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        return digits;
+    }
+
+    /**
+     * One field of a compiled layout.
+     */
+    public final class Field {
+
+        private final String name;
+
+        private final int offset;
+
+        private final int length;
+
+        private final boolean right;
+
+        private final byte pad;
+
+        private final boolean numeric;
+
+        Field(final RecordLayout.Field declared) {
+            this.name = declared.name;
+            this.offset = declared.offset;
+            this.length = declared.length;
+            this.right = declared.justification == RecordLayout.Justification.RIGHT;
+            this.pad = declared.pad;
+            this.numeric = declared.type == RecordLayout.Type.NUMERIC;
+        }
+
+        /**
+         * Writes a number into the field of a record.
+         *
+         * @param value  the number
+         * @param dst    the array that holds the record
+         * @param record the position in {@code dst} of the first byte of the record
+         * @throws IllegalArgumentException if the number is negative or has more digits than the field is wide
+         */
+        public void write(final long value, final byte[] dst, final int record) {
+            if (value < 0) {
+                throw new IllegalArgumentException("Field " + name + " cannot hold negative " + value);
+            }
+            final int digits = digits(value);
+            if (digits > length) {
+                throw new IllegalArgumentException("Field " + name + " is too narrow for " + value);
+            }
+            final int from = record + offset;
+            final int to = from + length;
+            final int end = right ? to : from + digits;
+            fill(dst, from, end - digits);
+            fill(dst, end, to);
+            long rest = value;
+            for (int i = end - 1; i >= end - digits; i--) {
+                dst[i] = (byte) ('0' + rest % 10);
+                rest /= 10;
+            }
+        }
+
+        /**
+         * Writes text into the field of a record. Alphanumeric text is transliterated and truncated to the width of the
+         * field.
+         *
+         * @param value  the text
+         * @param dst    the array that holds the record
+         * @param record the position in {@code dst} of the first byte of the record
+         * @throws IllegalArgumentException if the field is numeric and the text is not all digits or is too long
+         */
+        public void write(final CharSequence value, final byte[] dst, final int record) {
+            final int from = record + offset;
+            final int to = from + length;
+            final int written = numeric ? copyDigits(value, dst, from) : transliterate(value, dst, from, to);
+            if (right) {
+                System.arraycopy(dst, from, dst, to - written, written);
+                fill(dst, from, to - written);
+            } else {
+                fill(dst, from + written, to);
+            }
+        }
+
+        /**
+         * Writes a number into the field of a record. The buffer's position is not changed.
+         *
+         * @param value  the number
+         * @param dst    the buffer that holds the record
+         * @param record the index in {@code dst} of the first byte of the record
+         * @throws IllegalArgumentException if the number is negative or has more digits than the field is wide
+         */
+        public void write(final long value, final ByteBuffer dst, final int record) {
+            if (dst.hasArray()) {
+                write(value, dst.array(), dst.arrayOffset() + record);
+            } else {
+                final byte[] staging = STAGING.get();
+                write(value, staging, 0);
+                copy(staging, dst, record);
+            }
+        }
+
+        /**
+         * Writes text into the field of a record. The buffer's position is not changed.
+         *
+         * @param value  the text
+         * @param dst    the buffer that holds the record
+         * @param record the index in {@code dst} of the first byte of the record
+         * @throws IllegalArgumentException if the field is numeric and the text is not all digits or is too long
+         */
+        public void write(final CharSequence value, final ByteBuffer dst, final int record) {
+            if (dst.hasArray()) {
+                write(value, dst.array(), dst.arrayOffset() + record);
+            } else {
+                final byte[] staging = STAGING.get();
+                write(value, staging, 0);
+                copy(staging, dst, record);
+            }
+        }
+
+        private void copy(final byte[] staging, final ByteBuffer dst, final int record) {
+            for (int i = offset; i < offset + length; i++) {
+                dst.put(record + i, staging[i]);
+            }
+        }
+
+        private void fill(final byte[] dst, final int from, final int to) {
+            for (int i = from; i < to; i++) {
+                dst[i] = pad;
+            }
+        }
+
+        /**
+         * Copies digits into the start of the field.
+         *
+         * @return the number of digits
+         */
+        private int copyDigits(final CharSequence value, final byte[] dst, final int from) {
+            final int count = value.length();
+            if (count > length) {
+                throw new IllegalArgumentException("Field " + name + " is too narrow for " + value);
+            }
+            for (int i = 0; i < count; i++) {
+                final char c = value.charAt(i);
+                if (c < '0' || c > '9') {
+                    throw new IllegalArgumentException("Field " + name + " cannot hold " + value);
+                }
+                dst[from + i] = (byte) c;
+            }
+            return count;
+        }
+
+        /**
+         * Transliterates text into the start of the field, stopping at the end of the field.
+         *
+         * @return the number of bytes written
+         */
+        private int transliterate(final CharSequence value, final byte[] dst, final int from, final int to) {
+            final ByteTransliterator bytes = charset.byteTransliterator();
+            final int identity = charset.identityRange();
+            final int low = identity >>> 8;
+            final int high = identity & 0xFF;
+            final int count = value.length();
+            int sp = 0;
+            int dp = from;
+            // Whether a combining mark here goes with the character before it, as in the encoder
+            boolean based = false;
+            while (sp < count && dp < to) {
+                final char c = value.charAt(sp);
+                if (c >= low && c <= high) {
+                    dst[dp++] = (byte) c;
+                    sp++;
+                    based = Character.isLetter(c);
+                    continue;
+                }
+                final int codepoint;
+                if (Character.isHighSurrogate(c) && sp + 1 < count && Character.isLowSurrogate(value.charAt(sp + 1))) {
+                    codepoint = Character.toCodePoint(c, value.charAt(sp + 1));
+                } else {
+                    codepoint = c;
+                }
+                final int written = bytes.transliterate(codepoint, dst, dp, to);
+                if (written > 0) {
+                    dp += written;
+                    based = Character.isLetter(codepoint);
+                } else if (written != ByteTransliterator.UNMAPPABLE) {
+                    // The transliteration does not fit, so the field ends short of it
+                    break;
+                } else if (!based || !charset.combines(codepoint)) {
+                    dst[dp++] = REPLACEMENT;
+                    based = true;
+                }
+                sp += Character.charCount(codepoint);
+            }
+            return dp - from;
+        }
+    }
+}
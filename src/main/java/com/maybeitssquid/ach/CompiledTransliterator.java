@@ -0,0 +1,265 @@
+package com.maybeitssquid.ach;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Immutable snapshot of a transliterator covering every code point, produced by {@link Filtering#compile()}. The
+ * snapshot is a two-level trie: the high bits of a code point select a block number in {@code index}, and the low bits
+ * select an entry within that block in {@code data}. Identical blocks are stored once, so the large unassigned and
+ * untransliterated ranges share a single block. Each entry packs the offset and length of the ASCII output within a
+ * single {@code byte[]} pool, with a length of zero meaning the code point cannot be transliterated. An entry of zero
+ * length whose offset is one marks a combining mark that the source would absorb into the character before it.
+ * Each distinct output is also kept as a {@code char[]}, which {@link #apply(int)} returns without copying.
+ *
+ * <p>Lookups through {@link #apply(int)}, {@link #length(int)}, {@link #copy(int, byte[], int)} and
+ * {@link #transliterate(int, byte[], int, int)} do not allocate, and because every field is final the snapshot can be
+ * shared by any number of threads without synchronization.</p>
+ *
+ * <p>Only ASCII output is kept. A code point that the source transliterator mapped to any character above
+ * {@code 0x7F} compiles as untransliterable, which matches how {@link TransliteratingASCII} treats it.</p>
+ */
+public final class CompiledTransliterator implements IntFunction<char[]>, ByteTransliterator {
+
+    private static final int SHIFT = 7;
+
+    private static final int BLOCK = 1 << SHIFT;
+
+    private static final int MASK = BLOCK - 1;
+
+    private static final int LENGTH_BITS = 8;
+
+    private static final int MAX_LENGTH = (1 << LENGTH_BITS) - 1;
+
+    private static final int LENGTH_MASK = MAX_LENGTH;
+
+    private static final int COMBINES = 1 << LENGTH_BITS;
+
+    private final char[] index;
+
+    private final int[] data;
+
+    private final byte[] pool;
+
+    /**
+     * The output that starts at each offset of {@code pool}, or {@code null} at an offset inside an output.
+     */
+    private final char[][] chars;
+
+    private final int identityRange;
+
+    private CompiledTransliterator(final char[] index, final int[] data, final byte[] pool, final int identityRange) {
+        this.index = index;
+        this.data = data;
+        this.pool = pool;
+        this.chars = new char[pool.length][];
+        for (final int entry : data) {
+            final int length = entry & LENGTH_MASK;
+            final int offset = entry >>> LENGTH_BITS;
+            if (length > 0 && chars[offset] == null) {
+                final char[] output = new char[length];
+                for (int i = 0; i < length; i++) {
+                    output[i] = (char) pool[offset + i];
+                }
+                chars[offset] = output;
+            }
+        }
+        this.identityRange = identityRange;
+    }
+
+    /**
+     * Evaluates a transliterator at every code point and packs the results.
+     *
+     * @param source   the transliterator to snapshot
+     * @param combines tells which code points without a transliteration are combining marks, as described by
+     *                 {@link Filtering#combines(int)}
+     * @return the compiled snapshot
+     * @throws IllegalArgumentException if any transliteration is longer than 255 characters
+     */
+    static CompiledTransliterator compile(final IntFunction<char[]> source, final IntPredicate combines) {
+        final char[] index = new char[(Character.MAX_CODE_POINT + 1) >>> SHIFT];
+        final Map<Block, Integer> blocks = new HashMap<>();
+        final Map<String, Integer> outputs = new HashMap<>();
+        int[] data = new int[BLOCK * 64];
+        int dataSize = 0;
+        byte[] pool = new byte[256];
+        int poolSize = 0;
+
+        final StringBuilder ascii = new StringBuilder();
+        for (int b = 0; b < index.length; b++) {
+            final int[] entries = new int[BLOCK];
+            for (int i = 0; i < BLOCK; i++) {
+                final int codepoint = (b << SHIFT) | i;
+                final char[] transliterated = source.apply(codepoint);
+                if (transliterated == null || transliterated.length == 0 || !isASCII(transliterated)) {
+                    if ((transliterated == null || transliterated.length == 0) && combines.test(codepoint)) {
+                        entries[i] = COMBINES;
+                    }
+                    continue;
+                } else if (transliterated.length > MAX_LENGTH) {
+                    throw new IllegalArgumentException(String.format(
+                            "Transliteration of %04X is %d characters, which exceeds %d",
+                            codepoint, transliterated.length, MAX_LENGTH));
+                }
+                ascii.setLength(0);
+                ascii.append(transliterated);
+                final String key = ascii.toString();
+                Integer offset = outputs.get(key);
+                if (offset == null) {
+                    if (poolSize + key.length() > pool.length) {
+                        pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + key.length()));
+                    }
+                    for (int c = 0; c < key.length(); c++) {
+                        pool[poolSize + c] = (byte) key.charAt(c);
+                    }
+                    offset = poolSize;
+                    poolSize += key.length();
+                    outputs.put(key, offset);
+                }
+                entries[i] = offset << LENGTH_BITS | key.length();
+            }
+
+            final Block block = new Block(entries);
+            Integer start = blocks.get(block);
+            if (start == null) {
+                if (dataSize + BLOCK > data.length) {
+                    data = Arrays.copyOf(data, data.length * 2);
+                }
+                System.arraycopy(entries, 0, data, dataSize, BLOCK);
+                start = dataSize;
+                dataSize += BLOCK;
+                blocks.put(block, start);
+            }
+            index[b] = (char) (start >>> SHIFT);
+        }
+        return new CompiledTransliterator(index, Arrays.copyOf(data, dataSize), Arrays.copyOf(pool, poolSize),
+                Filtering.identityRange(source));
+    }
+
+    private static boolean isASCII(final char[] chars) {
+        for (final char c : chars) {
+            if (c > 0x007F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int entry(final int codepoint) {
+        final int block = codepoint >>> SHIFT;
+        return block < index.length ? data[(index[block] << SHIFT) | (codepoint & MASK)] : 0;
+    }
+
+    /**
+     * Returns the number of ASCII bytes that a code point transliterates to.
+     *
+     * @param codepoint the code point
+     * @return the length of the transliteration, or zero if the code point cannot be transliterated
+     */
+    public int length(final int codepoint) {
+        return entry(codepoint) & LENGTH_MASK;
+    }
+
+    /**
+     * Tells whether a code point is a combining mark that the source transliterator absorbed into the character before
+     * it, as described by {@link Filtering#combines(int)}.
+     *
+     * @param codepoint the code point
+     * @return whether the code point is absorbed
+     */
+    public boolean combines(final int codepoint) {
+        return entry(codepoint) == COMBINES;
+    }
+
+    /**
+     * Copies the transliteration of a code point into a byte array.
+     *
+     * @param codepoint the code point
+     * @param dst       the destination array, which must have room for {@link #length(int)} bytes
+     * @param offset    the position in {@code dst} of the first byte to write
+     * @return the number of bytes written, which is zero if the code point cannot be transliterated
+     */
+    public int copy(final int codepoint, final byte[] dst, final int offset) {
+        final int entry = entry(codepoint);
+        final int length = entry & LENGTH_MASK;
+        System.arraycopy(pool, entry >>> LENGTH_BITS, dst, offset, length);
+        return length;
+    }
+
+    @Override
+    public int transliterate(final int codepoint, final byte[] dst, final int offset, final int limit) {
+        final int entry = entry(codepoint);
+        final int length = entry & LENGTH_MASK;
+        if (length == 0) {
+            return UNMAPPABLE;
+        } else if (length > limit - offset) {
+            return ~length;
+        } else if (length == 1) {
+            dst[offset] = pool[entry >>> LENGTH_BITS];
+        } else {
+            System.arraycopy(pool, entry >>> LENGTH_BITS, dst, offset, length);
+        }
+        return length;
+    }
+
+    /**
+     * Returns the transliteration of a code point. The array is shared by every caller, so it must not be modified.
+     */
+    @Override
+    public char[] apply(final int codepoint) {
+        final int entry = entry(codepoint);
+        return (entry & LENGTH_MASK) == 0 ? Filtering.NOTHING : chars[entry >>> LENGTH_BITS];
+    }
+
+    /**
+     * Returns the range of ASCII values that the snapshot maps each to itself, packed as described by
+     * {@link Filtering#identityRange()}.
+     */
+    int identityRange() {
+        return identityRange;
+    }
+
+    /**
+     * Estimates the heap occupied by this snapshot, assuming 16 byte array headers and 8 byte alignment.
+     *
+     * @return the approximate size in bytes
+     */
+    public long footprint() {
+        long bytes = 32 + arrayBytes(index.length, 2) + arrayBytes(data.length, 4) + arrayBytes(pool.length, 1)
+                + arrayBytes(chars.length, 4);
+        for (final char[] output : chars) {
+            if (output != null) {
+                bytes += arrayBytes(output.length, 2);
+            }
+        }
+        return bytes;
+    }
+
+    private static long arrayBytes(final int length, final int width) {
+        return (16L + (long) length * width + 7) & ~7L;
+    }
+
+    private static final class Block {
+        private final int[] entries;
+
+        private final int hash;
+
+        Block(final int[] entries) {
+            this.entries = entries;
+            this.hash = Arrays.hashCode(entries);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof Block && Arrays.equals(entries, ((Block) o).entries);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.maybeitssquid.ach;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.text.Normalizer;
+import java.util.Arrays;
+
+/**
+ * Read-only table of what each {@link Normalizer.Form} does to a single code point, so that {@link Normalizing} can
+ * normalize without building strings. The table is produced at build time by {@code DecompositionTableGenerator}.
+ * Code points that a form leaves alone have no entry, and Hangul syllables, which would otherwise make up most of the
+ * table, are decomposed arithmetically by {@link #hangul(int, int)}.
+ */
+final class DecompositionTable {
+
+    static final int MAGIC = 0x41434844;
+
+    static final String RESOURCE = "decompositions.bin";
+
+    private static final int HANGUL_BASE = 0xAC00;
+
+    private static final int HANGUL_L = 0x1100;
+
+    private static final int HANGUL_V = 0x1161;
+
+    private static final int HANGUL_T = 0x11A7;
+
+    private static final int HANGUL_V_COUNT = 21;
+
+    private static final int HANGUL_T_COUNT = 28;
+
+    private static final int HANGUL_COUNT = 19 * HANGUL_V_COUNT * HANGUL_T_COUNT;
+
+    private final boolean decomposes;
+
+    private final int[] codepoints;
+
+    private final int[] offsets;
+
+    private final char[] pool;
+
+    private DecompositionTable(final boolean decomposes, final int[] codepoints, final int[] offsets,
+                               final char[] pool) {
+        this.decomposes = decomposes;
+        this.codepoints = codepoints;
+        this.offsets = offsets;
+        this.pool = pool;
+    }
+
+    /**
+     * Holds the tables apart from the static helpers, which the generator uses before the resource exists.
+     */
+    private static final class Instances {
+        static final DecompositionTable[] ALL = load();
+    }
+
+    static DecompositionTable get(final Normalizer.Form form) {
+        return Instances.ALL[form.ordinal()];
+    }
+
+    static boolean isHangulSyllable(final int codepoint) {
+        return codepoint >= HANGUL_BASE && codepoint < HANGUL_BASE + HANGUL_COUNT;
+    }
+
+    /**
+     * Tests whether the form is one of the decomposing forms, which also split Hangul syllables into jamo.
+     */
+    boolean decomposes() {
+        return decomposes;
+    }
+
+    /**
+     * Returns one of the two or three jamo that a Hangul syllable decomposes into.
+     *
+     * @param syllable a code point for which {@link #isHangulSyllable(int)} is true
+     * @param index    0 for the leading consonant, 1 for the vowel, 2 for the trailing consonant
+     * @return the jamo, or {@code -1} if the syllable has no trailing consonant and {@code index} is 2
+     */
+    static int hangul(final int syllable, final int index) {
+        final int s = syllable - HANGUL_BASE;
+        switch (index) {
+            case 0:
+                return HANGUL_L + s / (HANGUL_V_COUNT * HANGUL_T_COUNT);
+            case 1:
+                return HANGUL_V + (s % (HANGUL_V_COUNT * HANGUL_T_COUNT)) / HANGUL_T_COUNT;
+            default:
+                final int t = s % HANGUL_T_COUNT;
+                return t == 0 ? -1 : HANGUL_T + t;
+        }
+    }
+
+    /**
+     * Finds the entry for a code point.
+     *
+     * @param codepoint the code point
+     * @return the index of the entry, or a negative value if the form leaves the code point unchanged
+     */
+    int find(final int codepoint) {
+        return Arrays.binarySearch(codepoints, codepoint);
+    }
+
+    /**
+     * @return the position in {@link #pool()} of the first char of an entry
+     */
+    int start(final int entry) {
+        return offsets[entry];
+    }
+
+    /**
+     * @return the position in {@link #pool()} just past the last char of an entry
+     */
+    int end(final int entry) {
+        return offsets[entry + 1];
+    }
+
+    /**
+     * @return the UTF-16 text of every entry, end to end
+     */
+    char[] pool() {
+        return pool;
+    }
+
+    private static DecompositionTable[] load() {
+        try (InputStream resource = DecompositionTable.class.getResourceAsStream(RESOURCE)) {
+            if (resource == null) {
+                throw new IllegalStateException("Missing resource " + RESOURCE);
+            }
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(resource));
+            if (in.readInt() != MAGIC) {
+                throw new IllegalStateException("Resource " + RESOURCE + " is not a decomposition table");
+            }
+            final Normalizer.Form[] forms = Normalizer.Form.values();
+            if (in.readInt() != forms.length) {
+                throw new IllegalStateException("Resource " + RESOURCE + " does not cover every normalization form");
+            }
+            final DecompositionTable[] tables = new DecompositionTable[forms.length];
+            for (final Normalizer.Form form : forms) {
+                final int count = in.readInt();
+                final int[] codepoints = new int[count];
+                final int[] offsets = new int[count + 1];
+                char[] pool = new char[count * 2];
+                int size = 0;
+                for (int i = 0; i < count; i++) {
+                    codepoints[i] = in.readInt();
+                    final int length = in.readUnsignedByte();
+                    if (size + length > pool.length) {
+                        pool = Arrays.copyOf(pool, Math.max(pool.length * 2, size + length));
+                    }
+                    for (int c = 0; c < length; c++) {
+                        pool[size++] = in.readChar();
+                    }
+                    offsets[i + 1] = size;
+                }
+                final boolean decomposes = form == Normalizer.Form.NFD || form == Normalizer.Form.NFKD;
+                tables[form.ordinal()] = new DecompositionTable(decomposes, codepoints, offsets,
+                        Arrays.copyOf(pool, size));
+            }
+            return tables;
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Unable to read " + RESOURCE, e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.maybeitssquid.ach;
 
+import java.util.Arrays;
 import java.util.function.IntFunction;
 
 /**
@@ -7,16 +8,32 @@ import java.util.function.IntFunction;
  * the default output is either an array with a single character corresponding to the code point or an empty array
  * if the code point is not in the ASCII range. Encodings for specific ASCII values can be overridden by the
  * {@code encode} functions.
+ *
+ * <p>Overrides are copy-on-write. Each change copies the table, changes the copy and publishes it in one volatile
+ * write, so the {@code encode} and {@code block} functions can be called while encoders on other threads are using the
+ * transliterator. A lookup never locks and always sees one whole table, either the one before a change or the one
+ * after it.</p>
  */
-public class Filtering implements IntFunction<char[]> {
+public class Filtering implements IntFunction<char[]>, ByteTransliterator {
     public static final char[] NOTHING = new char[0];
 
-    protected final char[][] ASCII = new char[0x80][];
+    /**
+     * The current transliterations of the ASCII range. A published table is never modified, so a reader that loads
+     * this field once sees a consistent snapshot. It is private so that every change goes through {@link #publish}.
+     */
+    private volatile char[][] ASCII;
+
+    /**
+     * Cached result of {@link #identityRange()}, along with the table it was computed from.
+     */
+    private volatile IdentityRange identity;
 
     public Filtering() {
+        final char[][] table = new char[0x80][];
         for (char cp = 0; cp < 0x80; cp++) {
-            ASCII[cp] = new char[]{cp};
+            table[cp] = new char[]{cp};
         }
+        this.ASCII = table;
     }
 
     @SuppressWarnings("UnusedReturnValue")
@@ -24,7 +41,7 @@ public class Filtering implements IntFunction<char[]> {
         if (codepoint >= 0x80) {
             throw new IllegalArgumentException("Requested encoding of " + codepoint + ", which exceeds 0x80");
         } else {
-            this.ASCII[codepoint] = new char[] {as};
+            publish(codepoint, new char[] {as});
         }
         return this;
     }
@@ -34,7 +51,7 @@ public class Filtering implements IntFunction<char[]> {
         if (codepoint >= 0x80) {
             throw new IllegalArgumentException("Requested encoding of " + codepoint + ", which exceeds 0x80");
         } else {
-            this.ASCII[codepoint] = as;
+            publish(codepoint, as.clone());
         }
         return this;
     }
@@ -48,7 +65,7 @@ public class Filtering implements IntFunction<char[]> {
         if (codepoint >= 0x80) {
             throw new IllegalArgumentException("Requested blocking of " + codepoint + ", which exceeds 0x80");
         } else {
-            this.ASCII[codepoint] = NOTHING;
+            publish(codepoint, NOTHING);
         }
         return this;
     }
@@ -59,15 +76,171 @@ public class Filtering implements IntFunction<char[]> {
      */
     @SuppressWarnings("UnusedReturnValue")
     public Filtering blockControls() {
-        for (int i = 0x00; i < 0x20; i++) {
-            this.ASCII[i] = NOTHING;
+        synchronized (this) {
+            final char[][] table = ASCII.clone();
+            Arrays.fill(table, 0x00, 0x20, NOTHING);
+            table[0x7F] = NOTHING;
+            this.ASCII = table;
+            changed();
         }
-        this.ASCII[0x7F] = NOTHING;
         return this;
     }
 
+    /**
+     * Returns the current transliterations of the ASCII range, indexed by code point. The table is a published snapshot
+     * that other threads may be reading, so it must not be modified. Subclasses change it through the {@code encode}
+     * and {@code block} functions, which publish a modified copy.
+     *
+     * @return the current table
+     */
+    protected final char[][] ascii() {
+        return ASCII;
+    }
+
+    /**
+     * Publishes a copy of the ASCII table with one code point changed. Writers take turns, so that no change is lost
+     * to a concurrent one.
+     */
+    private synchronized void publish(final int codepoint, final char[] as) {
+        final char[][] table = ASCII.clone();
+        table[codepoint] = as;
+        this.ASCII = table;
+        changed();
+    }
+
+    /**
+     * Called after each new ASCII table has been published, while writers are still held off. A subclass that caches
+     * results derived from the table overrides this to discard them.
+     */
+    protected void changed() {
+    }
+
+    /**
+     * Tests whether a code point that has no transliteration of its own is a combining mark that belongs with the
+     * letter before it, so that an encoder can treat the pair as a unit. That is what normalizing the whole run
+     * would do: a base letter followed by marks decomposes the same way as its precomposed form, and the marks fall
+     * away. The strict filter treats every code point on its own.
+     *
+     * @param codepoint a code point whose transliteration is empty
+     * @return whether the code point should be absorbed into the preceding character
+     */
+    protected boolean combines(final int codepoint) {
+        return false;
+    }
+
+    /**
+     * Finds the longest run of ASCII code points that are each transliterated to exactly themselves. Coders use it to
+     * pass clean runs of input straight through without consulting the table for every element.
+     *
+     * @return the first code point of the run in bits 8 to 15 and the last in bits 0 to 7, or {@code 0x7F00} (an
+     * empty run) if no code point maps to itself
+     */
+    final int identityRange() {
+        final char[][] table = ASCII;
+        final IdentityRange cached = this.identity;
+        if (cached != null && cached.table == table) {
+            return cached.range;
+        }
+        final int range = identityRange(cp -> table[cp]);
+        this.identity = new IdentityRange(table, range);
+        return range;
+    }
+
+    /**
+     * Finds the longest run of ASCII code points that a transliterator maps each to exactly itself.
+     *
+     * @param ascii the transliterator, which is only called for ASCII code points
+     * @return the run, packed as described by {@link #identityRange()}
+     */
+    static int identityRange(final IntFunction<char[]> ascii) {
+        int bestStart = 0x7F;
+        int bestEnd = 0x00;
+        int start = -1;
+        for (int cp = 0; cp <= 0x80; cp++) {
+            final char[] encoded = cp < 0x80 ? ascii.apply(cp) : null;
+            if (encoded != null && encoded.length == 1 && encoded[0] == cp) {
+                if (start < 0) {
+                    start = cp;
+                }
+            } else if (start >= 0) {
+                if (cp - 1 - start > bestEnd - bestStart) {
+                    bestStart = start;
+                    bestEnd = cp - 1;
+                }
+                start = -1;
+            }
+        }
+        return bestStart << 8 | bestEnd;
+    }
+
+    private static final class IdentityRange {
+        final char[][] table;
+
+        final int range;
+
+        IdentityRange(final char[][] table, final int range) {
+            this.table = table;
+            this.range = range;
+        }
+    }
+
+    /**
+     * Takes an immutable snapshot of the current transliteration of every code point. Later changes through the
+     * {@code encode} and {@code block} functions do not affect the snapshot.
+     *
+     * @return the compiled transliterator
+     */
+    public CompiledTransliterator compile() {
+        return CompiledTransliterator.compile(this::peek, this::combines);
+    }
+
     @Override
     public char[] apply(final int value) {
         return value < 0x80 ? ASCII[value] : NOTHING;
     }
+
+    @Override
+    public int transliterate(final int codepoint, final byte[] dst, final int offset, final int limit) {
+        return narrow(apply(codepoint), dst, offset, limit);
+    }
+
+    /**
+     * Writes a transliteration as bytes, with the results described by
+     * {@link ByteTransliterator#transliterate(int, byte[], int, int)}.
+     */
+    static int narrow(final char[] chars, final byte[] dst, final int offset, final int limit) {
+        final int length = chars.length;
+        if (length == 1) {
+            final char c = chars[0];
+            if (c > 0x007F) {
+                return UNMAPPABLE;
+            } else if (offset == limit) {
+                return ~1;
+            }
+            dst[offset] = (byte) c;
+            return 1;
+        } else if (length == 0) {
+            return UNMAPPABLE;
+        } else if (length > limit - offset) {
+            return ~length;
+        }
+        for (int i = 0; i < length; i++) {
+            final char c = chars[i];
+            if (c > 0x007F) {
+                return UNMAPPABLE;
+            }
+            dst[offset + i] = (byte) c;
+        }
+        return length;
+    }
+
+    /**
+     * Returns the same transliteration as {@link #apply(int)}, but without retaining anything computed along the way.
+     *
+     * @param value the code point
+     * @return the transliteration
+     */
+    protected char[] peek(final int value) {
+        return apply(value);
+    }
 }
@@ -0,0 +1,104 @@
+package com.maybeitssquid.ach;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Copies long runs of characters that a charset passes through unchanged by handing them to the JDK's ISO-8859-1
+ * coders, whose inner loops HotSpot replaces with vectorized intrinsics. Every ASCII character is its own ISO-8859-1
+ * encoding, so those coders copy a clean run exactly, and the caller only has to make sure that the run is clean.
+ *
+ * <p>Each call pays for a trip through the JDK's coder machinery, so runs shorter than {@link #MINIMUM} are not worth
+ * handing over. Each instance holds a JDK encoder and decoder, and like them must not be used by more than one thread
+ * at a time.</p>
+ */
+final class Latin1Runs {
+
+    /**
+     * Length of the shortest run worth handing to the JDK.
+     */
+    static final int MINIMUM = 64;
+
+    /**
+     * Length of the longest window that {@link #narrow} hands over at once, and of the scratch buffer it encodes into.
+     */
+    private static final int MAXIMUM = 4096;
+
+    private CharsetEncoder encoder;
+
+    private ByteBuffer scratch;
+
+    private CharsetDecoder decoder;
+
+    /**
+     * Widens bytes that the caller has already checked into characters.
+     *
+     * @param in     the decoder input, which must be backed by an array
+     * @param sp     the position in the array behind {@code in} of the first byte
+     * @param out    the decoder output, which must be backed by an array
+     * @param dp     the position in the array behind {@code out} of the first character to write
+     * @param length the number of bytes to widen, which must fit in {@code out}
+     */
+    void widen(final ByteBuffer in, final int sp, final CharBuffer out, final int dp, final int length) {
+        if (decoder == null) {
+            decoder = StandardCharsets.ISO_8859_1.newDecoder();
+        }
+        final int limit = in.limit();
+        in.limit(sp - in.arrayOffset() + length);
+        in.position(sp - in.arrayOffset());
+        out.position(dp - out.arrayOffset());
+        decoder.decode(in, out, false);
+        in.limit(limit);
+    }
+
+    /**
+     * Narrows the leading characters of the encoder input that fall within {@code [low, high]} into bytes. The JDK
+     * encoder copies every character up to {@code 0xFF}, so this encodes a window at a time into a scratch buffer,
+     * checks the bytes that came out and copies only the clean ones to {@code out}, doubling the window each time it is
+     * clean. Nothing in {@code out} is written past the end of the run, and the position of {@code out} is not changed.
+     * Doubling the window keeps the characters encoded past the end of the run to no more than the length of the run.
+     *
+     * @param in     the encoder input, which must be backed by an array
+     * @param sp     the position in the array behind {@code in} of the first character
+     * @param out    the encoder output, which must be backed by an array
+     * @param dp     the position in the array behind {@code out} of the first byte to write
+     * @param length the most characters to copy, which must fit in {@code out}
+     * @param low    the lowest character that encodes as itself, at most {@code 0x7F}
+     * @param high   the highest character that encodes as itself, at most {@code 0x7F}
+     * @return the number of characters copied, which stops short of {@code length} at the first character out of range
+     */
+    int narrow(final CharBuffer in, final int sp, final ByteBuffer out, final int dp, final int length,
+               final int low, final int high) {
+        if (encoder == null) {
+            encoder = StandardCharsets.ISO_8859_1.newEncoder();
+            scratch = ByteBuffer.allocate(MAXIMUM);
+        }
+        final byte[] bytes = scratch.array();
+        final byte[] dst = out.array();
+        final int limit = in.limit();
+        int copied = 0;
+        int window = MINIMUM;
+        try {
+            while (copied < length) {
+                final int n = Math.min(window, length - copied);
+                in.limit(sp - in.arrayOffset() + copied + n);
+                in.position(sp - in.arrayOffset() + copied);
+                scratch.clear();
+                encoder.encode(in, scratch, false);
+                final int clean = TransliteratingASCII.span(bytes, 0, scratch.position(), low, high);
+                System.arraycopy(bytes, 0, dst, dp + copied, clean);
+                copied += clean;
+                if (clean < n) {
+                    break;
+                }
+                window = Math.min(window << 1, MAXIMUM);
+            }
+            return copied;
+        } finally {
+            in.limit(limit);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.maybeitssquid.ach;
+
+import java.util.function.IntFunction;
+
+/**
+ * Transliterator that turns every code point above ASCII into exactly one character, so that text encodes to as many
+ * bytes as it has code points. A transliteration of several characters, such as {@code "1/4"} or {@code "OE"}, is cut
+ * to its first character, and a code point that would transliterate to nothing, such as U+00B4 or a combining mark,
+ * becomes a filler character instead. That makes the length of a fixed-width field known before it is encoded, which
+ * {@link #field(CharSequence, byte[], int, int)} takes advantage of to write a field in one pass.
+ *
+ * <p>The ASCII range is passed through from the underlying transliterator unchanged, so blocked control characters are
+ * still unmappable, and the decoder still rejects them. An encoder that replaces unmappable characters with a single
+ * byte, as the default {@code ?} does, keeps the length of the text.</p>
+ *
+ * <p>Text is counted in code points, not in user-perceived characters, so a letter followed by a combining accent
+ * takes two bytes. Normalizing text to NFC before encoding it keeps such letters to one byte.</p>
+ */
+public final class LengthPreserving implements IntFunction<char[]>, ByteTransliterator {
+
+    /**
+     * Each ASCII character as a transliteration of its own, so that returning one allocates nothing.
+     */
+    private static final char[][] SINGLE = new char[0x80][];
+
+    static {
+        for (char c = 0; c < SINGLE.length; c++) {
+            SINGLE[c] = new char[]{c};
+        }
+    }
+
+    private final IntFunction<char[]> source;
+
+    private final ByteTransliterator bytes;
+
+    private final char filler;
+
+    /**
+     * Creates a length-preserving view of a transliterator.
+     *
+     * @param source the transliterator to cut down to one character per code point
+     * @param filler the character that stands in for a code point that {@code source} transliterates to nothing
+     * @throws IllegalArgumentException if the filler is not a printable ASCII character
+     */
+    public LengthPreserving(final IntFunction<char[]> source, final char filler) {
+        if (filler < 0x20 || filler > 0x7E) {
+            throw new IllegalArgumentException(String.format("Filler U+%04X is not printable ASCII", (int) filler));
+        }
+        this.source = source;
+        this.bytes = ByteTransliterator.of(source);
+        this.filler = filler;
+    }
+
+    /**
+     * Returns the transliterator that this one cuts down.
+     */
+    IntFunction<char[]> source() {
+        return source;
+    }
+
+    /**
+     * Returns the character that stands in for a code point that would otherwise transliterate to nothing.
+     *
+     * @return the filler
+     */
+    public char filler() {
+        return filler;
+    }
+
+    /**
+     * Picks the one character that a code point above ASCII transliterates to.
+     */
+    private char single(final int codepoint) {
+        final char[] transliterated = source.apply(codepoint);
+        if (transliterated != null && transliterated.length > 0) {
+            final char c = transliterated[0];
+            if (c >= 0x20 && c < 0x7F) {
+                return c;
+            }
+        }
+        return filler;
+    }
+
+    @Override
+    public char[] apply(final int codepoint) {
+        return codepoint < 0x80 ? source.apply(codepoint) : SINGLE[single(codepoint)];
+    }
+
+    @Override
+    public int transliterate(final int codepoint, final byte[] dst, final int offset, final int limit) {
+        if (codepoint < 0x80) {
+            return bytes.transliterate(codepoint, dst, offset, limit);
+        } else if (offset == limit) {
+            return ~1;
+        }
+        dst[offset] = (byte) single(codepoint);
+        return 1;
+    }
+
+    /**
+     * Writes a fixed-width field. Each code point of the value takes exactly one byte, so the field is written in one
+     * pass with no encoder and nothing to measure afterwards. A value with more code points than the field is wide is
+     * truncated, and a shorter one is padded on the right with spaces. Unlike the encoder, this writes the filler for
+     * an unmappable ASCII character too, so that the field always comes out whole.
+     *
+     * @param value  the text of the field
+     * @param dst    the record to write the field into
+     * @param offset the position in {@code dst} of the first byte of the field
+     * @param width  the width of the field in bytes
+     * @return the number of bytes that hold the value, with the padding after them
+     */
+    public int field(final CharSequence value, final byte[] dst, final int offset, final int width) {
+        final int length = value.length();
+        int sp = 0;
+        int dp = offset;
+        final int dl = offset + width;
+        while (dp < dl && sp < length) {
+            final char c = value.charAt(sp);
+            final int codepoint;
+            if (Character.isHighSurrogate(c) && sp + 1 < length && Character.isLowSurrogate(value.charAt(sp + 1))) {
+                codepoint = Character.toCodePoint(c, value.charAt(sp + 1));
+                sp += 2;
+            } else {
+                codepoint = c;
+                sp++;
+            }
+            if (transliterate(codepoint, dst, dp, dl) != 1) {
+                dst[dp] = (byte) filler;
+            }
+            dp++;
+        }
+        final int written = dp - offset;
+        while (dp < dl) {
+            dst[dp++] = ' ';
+        }
+        return written;
+    }
+}
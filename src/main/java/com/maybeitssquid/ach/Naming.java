@@ -1,16 +1,34 @@
 package com.maybeitssquid.ach;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Function to convert a Unicode codepoint into a char[], where all the characters are in the ASCII range 0x00 to 0x7F.
+ * Letters and symbols are transliterated from their Unicode character names, which are parsed at build time into a
+ * table rather than at runtime.
  */
 public class Naming extends Categorizing {
 
-    private static final Pattern latin = Pattern.compile("LATIN (SMALL |CAPITAL )?LETTER ([A-Z]+ )*(?<letter>\\p{Upper}\\p{Upper}?)\\b");
-
     public Naming() {
+        this(UNBOUNDED);
+    }
+
+    /**
+     * Creates a transliterator that shares the memo and the overrides above ASCII of another, as described by
+     * {@link Normalizing#Normalizing(Normalizing)}. Its table for the ASCII range starts out unchanged.
+     *
+     * @param shared the transliterator whose memo to share
+     */
+    Naming(final Naming shared) {
+        super(shared);
+    }
+
+    /**
+     * Creates a transliterator with a bounded memo.
+     *
+     * @param cacheEntries the approximate number of code points to memoize, as described by
+     *                     {@link Normalizing#Normalizing(java.text.Normalizer.Form, int)}
+     */
+    public Naming(final int cacheEntries) {
+        super(cacheEntries);
         encode(0x00B4, "");
         encode(0x00B7, '.');
         encode(0x00BC, "1/4");
@@ -110,71 +128,53 @@ public class Naming extends Categorizing {
         return this;
     }
 
-    protected char[] byName(final int codepoint) {
-        final String name = Character.getName(codepoint);
-        if (name.contains("EXCLAMATION MARK")) {
-            return ASCII['!'];
-        } else if (name.contains("QUESTION MARK")) {
-            return ASCII['?'];
-        } else if (name.contains("SEMICOLON")) {
-            return ASCII[';'];
-        } else if (name.contains("COMMA")) {
-            return ASCII[','];
-        } else if (name.contains("COLON")) {
-            return ASCII[':'];
-        } else if (name.contains("TILDE")) {
-            return ASCII['~'];
-        } else if (name.contains("PLUS SIGN")) {
-            return ASCII['+'];
-        } else if (name.contains("EQUALS SIGN")) {
-            return ASCII['='];
-        } else if (name.contains("REVERSE SOLIDUS")) {
-            return ASCII['\\'];
-        } else if (name.contains("SOLIDUS")) {
-            return ASCII['/'];
-        } else if (name.contains("ASTERISK")) {
-            return ASCII['*'];
-        } else if (name.contains("PERCENT SIGN")) {
-            return ASCII['%'];
-        } else if (name.contains("AMPERSAND")) {
-            return ASCII['&'];
-        } else if (name.contains("FULL STOP")) {
-            return ASCII['.'];
-        } else if (name.contains("APOSTROPHE")) {
-            return ASCII['\''];
-        } else {
-            return NOTHING;
+    @Override
+    public Naming prefetchBlocks() {
+        super.prefetchBlocks();
+        return this;
+    }
+
+    @Override
+    public Naming profile(final WorkloadProfile profile) {
+        super.profile(profile);
+        return this;
+    }
+
+    /**
+     * Looks up the transliteration that the build-time table derived from the Unicode name of a code
+     * point.
+     *
+     * @param codepoint the code point
+     * @return the transliteration, or {@code null} if the table has none
+     */
+    private char[] named(final int codepoint) {
+        final NamingTable table = NamingTable.get();
+        final int entry = table.find(codepoint);
+        if (entry < 0) {
+            return null;
         }
+        final int length = table.length(entry);
+        if (length == 1) {
+            return ascii()[table.charAt(entry, 0)];
+        }
+        final char[] result = new char[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = table.charAt(entry, i);
+        }
+        return result;
     }
 
-    private String letter(final int codepoint) {
-        final String name = Character.getName(codepoint);
-        final Matcher m = latin.matcher(name);
-        return m.find() ? m.group("letter") : "";
+    protected char[] byName(final int codepoint) {
+        final char[] named = named(codepoint);
+        return named == null ? NOTHING : named;
     }
 
     protected char[] uppercase(final int codepoint) {
-        final String letter = letter(codepoint);
-        switch (letter.length()) {
-            case 0:
-                return NOTHING;
-            case 1:
-                return ASCII[letter.charAt(0)];
-            default:
-                return letter.toCharArray();
-        }
+        return byName(codepoint);
     }
 
     protected char[] lowercase(final int codepoint) {
-        final String letter = letter(codepoint);
-        switch (letter.length()) {
-            case 0:
-                return NOTHING;
-            case 1:
-                return ASCII[Character.toLowerCase(letter.charAt(0))];
-            default:
-                return letter.toLowerCase().toCharArray();
-        }
+        return byName(codepoint);
     }
 
     protected char[] modifierLetter(final int codepoint) {
@@ -182,25 +182,13 @@ public class Naming extends Categorizing {
     }
 
     protected char[] startPunctuation(final int codepoint) {
-        final String name = Character.getName(codepoint);
-        if (name.contains("SQUARE BRACKET")) {
-            return ASCII['['];
-        } else if (name.contains("CURLY BRACKET")) {
-            return ASCII['{'];
-        } else {
-            return super.startPunctuation(codepoint);
-        }
+        final char[] named = named(codepoint);
+        return named == null ? super.startPunctuation(codepoint) : named;
     }
 
     protected char[] endPunctuation(final int codepoint) {
-        final String name = Character.getName(codepoint);
-        if (name.contains("SQUARE BRACKET")) {
-            return ASCII[']'];
-        } else if (name.contains("CURLY BRACKET")) {
-            return ASCII['}'];
-        } else {
-            return super.endPunctuation(codepoint);
-        }
+        final char[] named = named(codepoint);
+        return named == null ? super.endPunctuation(codepoint) : named;
     }
 
     protected char[] otherPunctuation(final int codepoint) {
@@ -216,15 +204,11 @@ public class Naming extends Categorizing {
     }
 
     protected char[] otherSymbol(final int codepoint) {
-        return codepoint == UNICODE_REPLACEMENT ? ASCII['?'] : byName(codepoint);
+        return codepoint == UNICODE_REPLACEMENT ? ascii()['?'] : byName(codepoint);
     }
 
     protected char[] quotePunctuation(final int codepoint) {
-        final String name = Character.getName(codepoint);
-        if (name.contains("SINGLE")) {
-            return ASCII['\''];
-        } else {
-            return super.quotePunctuation(codepoint);
-        }
+        final char[] named = named(codepoint);
+        return named == null ? super.quotePunctuation(codepoint) : named;
     }
 }
@@ -0,0 +1,86 @@
+package com.maybeitssquid.ach;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Read-only table of the ASCII transliterations that {@link Naming} derives from Unicode character names. The table
+ * is produced at build time by {@code NamingTableGenerator} so that neither {@link Character#getName(int)} nor any
+ * regular expression runs when a code point is first encoded.
+ */
+final class NamingTable {
+
+    static final int MAGIC = 0x4143484E;
+
+    static final String RESOURCE = "naming.bin";
+
+    private static final NamingTable INSTANCE = load();
+
+    private final int[] codepoints;
+
+    private final int[] offsets;
+
+    private final byte[] pool;
+
+    private NamingTable(final int[] codepoints, final int[] offsets, final byte[] pool) {
+        this.codepoints = codepoints;
+        this.offsets = offsets;
+        this.pool = pool;
+    }
+
+    static NamingTable get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Finds the entry for a code point.
+     *
+     * @param codepoint the code point
+     * @return the index of the entry, or a negative value if the table has no transliteration for the code point
+     */
+    int find(final int codepoint) {
+        return Arrays.binarySearch(codepoints, codepoint);
+    }
+
+    int length(final int entry) {
+        return offsets[entry + 1] - offsets[entry];
+    }
+
+    char charAt(final int entry, final int index) {
+        return (char) pool[offsets[entry] + index];
+    }
+
+    private static NamingTable load() {
+        try (InputStream resource = NamingTable.class.getResourceAsStream(RESOURCE)) {
+            if (resource == null) {
+                throw new IllegalStateException("Missing resource " + RESOURCE);
+            }
+            final DataInputStream in = new DataInputStream(new BufferedInputStream(resource));
+            if (in.readInt() != MAGIC) {
+                throw new IllegalStateException("Resource " + RESOURCE + " is not a naming table");
+            }
+            final int count = in.readInt();
+            final int[] codepoints = new int[count];
+            final int[] offsets = new int[count + 1];
+            byte[] pool = new byte[count * 2];
+            int size = 0;
+            for (int i = 0; i < count; i++) {
+                codepoints[i] = in.readInt();
+                final int length = in.readUnsignedByte();
+                if (size + length > pool.length) {
+                    pool = Arrays.copyOf(pool, Math.max(pool.length * 2, size + length));
+                }
+                in.readFully(pool, size, length);
+                size += length;
+                offsets[i + 1] = size;
+            }
+            return new NamingTable(codepoints, offsets, Arrays.copyOf(pool, size));
+        } catch (final IOException e) {
+            throw new UncheckedIOException("Unable to read " + RESOURCE, e);
+        }
+    }
+}
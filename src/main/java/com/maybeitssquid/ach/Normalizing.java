@@ -1,18 +1,106 @@
 package com.maybeitssquid.ach;
 
-import java.nio.CharBuffer;
 import java.text.Normalizer;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * Function that transliterates code points outside the ASCII range by applying a Unicode normalization form and
+ * keeping whatever ASCII characters remain. Results are memoized, and the memo is safe to share among encoders running
+ * on different threads. The memo can be bounded so that input covering the whole of Unicode cannot grow it without
+ * limit; explicit {@code encode} overrides are kept separately and are never evicted. Overrides above ASCII are
+ * copy-on-write like the ASCII table, so they can be changed while encoders are running: each change is published to
+ * the memo as soon as it is made, and a value computed from the old overrides by a concurrent miss is never left
+ * behind in the memo. Many transliterations above ASCII are built from entries in the ASCII table, so a change to that
+ * table empties the memo, and the same care keeps a concurrent miss from storing a value built from the old table.
+ *
+ * <p>Within this package, several transliterators can share one memo, so that charsets that differ only in how they
+ * treat ASCII pay for each code point above ASCII once between them rather than once each. Each keeps its own table
+ * for the ASCII range, but that table only applies to ASCII input: everything above ASCII is transliterated once by
+ * the owner of the memo, from the owner's ASCII table, and reaches every sharer unchanged.</p>
+ *
+ * <p>With {@link #prefetchBlocks()}, the first miss in a block of code points also has the rest of the block
+ * transliterated on a background thread, so that the first text in a new script does not pay for every letter as it
+ * first appears.</p>
+ */
 public class Normalizing extends Filtering {
 
-    private final Map<Integer, char[]> encodings = new HashMap<>();
+    /**
+     * Cache bound that lets the memo grow to cover every code point.
+     */
+    public static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    private final CodePointCache encodings;
+
+    /**
+     * The explicit overrides above ASCII. Only the owner of the memo reads or writes this field.
+     */
+    private volatile OverrideTable overrides;
+
+    /**
+     * The transliterator that owns the memo and computes everything above ASCII, which is this one unless it was
+     * created to share another's memo.
+     */
+    private final Normalizing source;
 
     private final Normalizer.Form form;
 
-    public Normalizing(final Normalizer.Form form) {
+    private final DecompositionTable decompositions;
+
+    /**
+     * One bit per memo page, set once the page has been queued for prefetching, or {@code null} when prefetching is
+     * off. Volatile so that prefetching can be turned on while encoders are running.
+     */
+    private volatile AtomicLongArray prefetched;
+
+    /**
+     * The profile to record into, or {@code null} when not recording. Volatile so that recording can be started or
+     * stopped while encoders are running.
+     */
+    private volatile WorkloadProfile profile;
+
+    /**
+     * Creates a transliterator with a bounded memo.
+     *
+     * @param form         the normalization form to apply
+     * @param cacheEntries the approximate number of code points to memoize, or {@link #UNBOUNDED}. The memo holds
+     *                     code points in pages of 256 that cost about 1 KB each, and the bound is rounded up to a
+     *                     whole number of pages.
+     */
+    public Normalizing(final Normalizer.Form form, final int cacheEntries) {
         this.form = form;
+        this.decompositions = DecompositionTable.get(form);
+        this.encodings = new CodePointCache(cacheEntries);
+        this.overrides = OverrideTable.EMPTY;
+        this.source = this;
+    }
+
+    /**
+     * Creates a transliterator that shares the memo, the overrides above ASCII and the normalization form of another.
+     * Everything above ASCII is transliterated by {@code shared}, so that a code point is only ever computed once and
+     * always the same way. This transliterator starts with its own table for the ASCII range, which its
+     * {@code encode} and {@code block} functions change without affecting {@code shared}. Overrides above ASCII are
+     * made in the shared memo, whichever transliterator they are made through.
+     *
+     * <p>The table for the ASCII range changes only how ASCII input is encoded. Results above ASCII are built from
+     * the ASCII table of {@code shared} and are returned as they are, so a character this transliterator blocks or
+     * replaces can still appear in them. The caller must only share a memo whose owner produces nothing above ASCII
+     * that the sharer would not accept, which is why this constructor is not public.</p>
+     *
+     * @param shared the transliterator whose memo to share
+     */
+    Normalizing(final Normalizing shared) {
+        this.source = shared.source;
+        this.form = source.form;
+        this.decompositions = source.decompositions;
+        this.encodings = source.encodings;
+    }
+
+    public Normalizing(final Normalizer.Form form) {
+        this(form, UNBOUNDED);
     }
 
     public Normalizing() {
@@ -24,14 +112,83 @@ public class Normalizing extends Filtering {
         return form;
     }
 
+    /**
+     * Reports how well the memo is doing.
+     *
+     * @return a snapshot of the memo's hit, miss and eviction counters
+     */
+    public CacheStatistics getCacheStatistics() {
+        return encodings.statistics();
+    }
+
+    /**
+     * Turns on block prefetching. From then on, the first miss on a code point in a block of 256 also queues every
+     * other assigned code point in that block to be transliterated on a shared background daemon thread and published
+     * into the memo together. The thread that missed computes only its own code point and does not wait. Each block is
+     * queued at most once, even if the memo later evicts it. Most alphabetic scripts, such as Latin Extended-A, Greek,
+     * Cyrillic or Hebrew, fit within one or two such blocks. Prefetching can be turned on while encoders are running,
+     * and they start prefetching on their next miss.
+     *
+     * @return this transliterator
+     */
+    public Normalizing prefetchBlocks() {
+        if (source != this) {
+            source.prefetchBlocks();
+        } else {
+            synchronized (this) {
+                if (prefetched == null) {
+                    prefetched = new AtomicLongArray(((Character.MAX_CODE_POINT >>> BLOCK_SHIFT) >>> 6) + 1);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Records every code point outside ASCII that this transliterator is asked for, cached or not, in a profile that
+     * can be saved and later used to {@linkplain #warmUp(WorkloadProfile) warm up} a new transliterator. Recording can
+     * be started or stopped while encoders are running.
+     *
+     * @param profile the profile to record into, or {@code null} to stop recording
+     * @return this transliterator
+     */
+    public Normalizing profile(final WorkloadProfile profile) {
+        if (source != this) {
+            source.profile(profile);
+        } else {
+            this.profile = profile;
+        }
+        return this;
+    }
+
+    /**
+     * Memoizes every code point in a profile that is not already memoized, on the calling thread and without counting
+     * the work as misses. Call this at startup, before the transliterator sees traffic. If the profile holds more code
+     * points than the memo is bounded to, the memo keeps the ones that fit.
+     *
+     * @param profile the code points to memoize
+     * @return the number of code points that were computed
+     */
+    public int warmUp(final WorkloadProfile profile) {
+        if (source != this) {
+            return source.warmUp(profile);
+        }
+        final long[] bits = new long[WorkloadProfile.WORDS_PER_BLOCK];
+        int computed = 0;
+        for (int block = 0; block < WorkloadProfile.BLOCKS; block++) {
+            if (profile.block(block, bits)) {
+                computed += fill(block, bits);
+            }
+        }
+        return computed;
+    }
+
     @Override
     public Normalizing encode(final int codepoint, final char as) {
         if (codepoint <= 0x0080) {
             super.encode(codepoint, as);
-        } else if (as <= 0x0080) {
-            encodings.put(codepoint, ASCII[as]);
         } else {
-            encodings.put(codepoint, new char[]{as});
+            source.override(codepoint, as <= 0x0080 ? ascii()[as] : new char[]{as});
         }
         return this;
     }
@@ -41,7 +198,7 @@ public class Normalizing extends Filtering {
         if (codepoint <= 0x0080) {
             super.encode(codepoint, as);
         } else {
-            encodings.put(codepoint, as);
+            source.override(codepoint, as.clone());
         }
         return this;
     }
@@ -55,7 +212,7 @@ public class Normalizing extends Filtering {
     @Override
     public Normalizing block(final int codepoint) {
         if (codepoint > 0x0080) {
-            encodings.remove(codepoint);
+            source.override(codepoint, null);
         } else {
             super.block(codepoint);
         }
@@ -68,39 +225,276 @@ public class Normalizing extends Filtering {
         return this;
     }
 
+    /**
+     * Empties the memo when this transliterator owns it, because its values may have been built from the old table.
+     */
+    @Override
+    protected void changed() {
+        if (source == this) {
+            encodings.clear();
+        }
+    }
+
     @Override
     public char[] apply(final int value) {
+        return value < 0x80 ? ascii()[value] : source.memoized(value);
+    }
+
+    private char[] memoized(final int value) {
+        final WorkloadProfile recording = this.profile;
+        if (recording != null) {
+            recording.record(value);
+        }
+        final char[] cached = this.encodings.get(value);
+        if (cached != null) {
+            return cached;
+        }
+        final AtomicLongArray queued = this.prefetched;
+        if (queued != null) {
+            prefetch(queued, value);
+        }
+        while (true) {
+            final OverrideTable before = this.overrides;
+            final char[][] table = ascii();
+            final char[] computed = uncached(before, value);
+            final char[] published = this.encodings.putIfAbsent(value, computed);
+            if (published != computed || this.overrides == before && ascii() == table) {
+                return published;
+            }
+            // The overrides or the ASCII table changed while this value was computed, so it may be stale
+            this.encodings.remove(value, computed);
+        }
+    }
+
+    @Override
+    protected char[] peek(final int value) {
         if (value < 0x80) {
-            return ASCII[value];
-        } else if (this.encodings.containsKey(value)) {
-            return this.encodings.get(value);
+            return ascii()[value];
+        }
+        final char[] cached = this.encodings.peek(value);
+        return cached != null ? cached : source.uncached(source.overrides, value);
+    }
+
+    /**
+     * Absorbs combining marks under the decomposing forms, which separate a precomposed letter into the same base and
+     * marks that decomposed input carries, and then keep only the base.
+     */
+    @Override
+    protected boolean combines(final int codepoint) {
+        switch (Character.getType(codepoint)) {
+            case Character.NON_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+            case Character.COMBINING_SPACING_MARK:
+                return decompositions.decomposes();
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Publishes a new override table and then brings the memo into line with it. A miss that computed its value from
+     * the old table notices the new one once it has stored its value, and takes the value back out. A new ASCII table
+     * is handled the same way, by {@link #changed()}.
+     *
+     * @param codepoint the code point to override
+     * @param as        its transliteration, or {@code null} to go back to the computed one
+     */
+    private synchronized void override(final int codepoint, final char[] as) {
+        if (as == null) {
+            this.overrides = this.overrides.without(codepoint);
+            this.encodings.remove(codepoint);
         } else {
-            final String normalized = Normalizer.normalize(Character.toString(value), this.form);
-            final CharBuffer buffer = CharBuffer.allocate(20);
-            normalized.codePoints().forEach(i -> buffer.put(dispatch(i)));
-            final char[] result;
-            switch (buffer.position()) {
-                case 0:
-                    result = NOTHING;
-                    break;
-                case 1:
-                    result = ASCII[buffer.get(0)];
-                    break;
-                default:
-                    result = new char[buffer.position()];
-                    buffer.position(0);
-                    buffer.get(result);
+            this.overrides = this.overrides.with(codepoint, as);
+            this.encodings.put(codepoint, as);
+        }
+    }
+
+    private static final int BLOCK_SHIFT = 8;
+
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    /**
+     * Queues the block holding a code point for the background thread, unless it has been queued before.
+     */
+    private void prefetch(final AtomicLongArray queued, final int value) {
+        if (value < 0 || value > Character.MAX_CODE_POINT) {
+            return;
+        }
+        final int block = value >>> BLOCK_SHIFT;
+        final int word = block >>> 6;
+        final long bit = 1L << block;
+        long bits;
+        do {
+            bits = queued.get(word);
+            if ((bits & bit) != 0) {
+                return;
             }
-            this.encodings.put(value, result);
-            return result;
+        } while (!queued.compareAndSet(word, bits, bits | bit));
+        Prefetcher.EXECUTOR.execute(() -> fill(block, null));
+    }
+
+    /**
+     * Transliterates the code points in a block that the memo does not yet hold, and then publishes them together.
+     *
+     * @param block the block number, which is its first code point shifted right by 8
+     * @param only  four words of bits selecting the code points to fill, or {@code null} for every assigned one
+     * @return the number of code points computed
+     */
+    private int fill(final int block, final long[] only) {
+        final int first = block << BLOCK_SHIFT;
+        final char[][] values = new char[BLOCK_SIZE][];
+        final OverrideTable before = this.overrides;
+        final char[][] table = ascii();
+        int computed = 0;
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            final int codepoint = first + i;
+            final boolean wanted = only == null
+                    ? Character.getType(codepoint) != Character.UNASSIGNED
+                    : (only[i >>> 6] & 1L << i) != 0;
+            if (codepoint >= 0x80 && wanted && encodings.peek(codepoint) == null) {
+                values[i] = uncached(before, codepoint);
+                computed++;
+            }
+        }
+        if (computed > 0) {
+            encodings.fill(first, values);
+            if (this.overrides != before || ascii() != table) {
+                for (int i = 0; i < BLOCK_SIZE; i++) {
+                    if (values[i] != null) {
+                        encodings.remove(first + i, values[i]);
+                    }
+                }
+            }
+        }
+        return computed;
+    }
+
+    /**
+     * Waits until every block queued so far by any transliterator has been published.
+     */
+    static void awaitPrefetches() throws InterruptedException {
+        try {
+            Prefetcher.EXECUTOR.submit(() -> { }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Holds the background thread, which is only started once some transliterator prefetches. It is a daemon, so it
+     * never keeps the JVM alive, and it runs at low priority so that it yields to the encoders it is working for.
+     */
+    private static final class Prefetcher {
+        static final ExecutorService EXECUTOR = Executors.newSingleThreadExecutor(task -> {
+            final Thread thread = new Thread(task, "ach-transliteration-prefetch");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Looks up a code point that is not in the memo, either because it has not been seen or because it was evicted.
+     */
+    private char[] uncached(final OverrideTable overrides, final int value) {
+        final char[] override = overrides.get(value);
+        return override != null ? override : compute(value);
+    }
+
+    /**
+     * Transliterates a code point that is not memoized. The normalization comes from the build-time
+     * {@link DecompositionTable} rather than {@link Normalizer}, and the transliterations of its code points are
+     * gathered in per-thread scratch space, so the only allocation is the result, and none at all when the result is
+     * a single character or is exactly what {@link #dispatch(int)} returned.
+     */
+    private char[] compute(final int value) {
+        final Scratch shared = SCRATCH.get();
+        // A subclass's dispatch could transliterate recursively, which must not clobber the scratch in use
+        final Scratch scratch = shared.busy ? new Scratch() : shared;
+        scratch.busy = true;
+        try {
+            scratch.clear();
+            final int entry = decompositions.find(value);
+            if (entry >= 0) {
+                final char[] pool = decompositions.pool();
+                final int end = decompositions.end(entry);
+                int i = decompositions.start(entry);
+                while (i < end) {
+                    final int codepoint = Character.codePointAt(pool, i, end);
+                    scratch.append(dispatch(codepoint));
+                    i += Character.charCount(codepoint);
+                }
+            } else if (decompositions.decomposes() && DecompositionTable.isHangulSyllable(value)) {
+                for (int i = 0; i < 3; i++) {
+                    final int jamo = DecompositionTable.hangul(value, i);
+                    if (jamo >= 0) {
+                        scratch.append(dispatch(jamo));
+                    }
+                }
+            } else {
+                scratch.append(dispatch(value));
+            }
+            return scratch.result(ascii());
+        } finally {
+            scratch.busy = false;
         }
     }
 
     protected char[] dispatch(final int codepoint) {
         if (codepoint < 0x80) {
-            return ASCII[codepoint];
+            return ascii()[codepoint];
         } else {
             return NOTHING;
         }
     }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Buffer that collects the transliterations of the code points a normalization produces.
+     */
+    private static final class Scratch {
+        private char[] chars = new char[32];
+
+        private int length;
+
+        /**
+         * The one non-empty transliteration appended since {@link #clear()}, or {@code null} if there were more.
+         */
+        private char[] only;
+
+        private int contributions;
+
+        private boolean busy;
+
+        void clear() {
+            length = 0;
+            only = null;
+            contributions = 0;
+        }
+
+        void append(final char[] transliterated) {
+            if (transliterated.length == 0) {
+                return;
+            }
+            if (length + transliterated.length > chars.length) {
+                chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + transliterated.length));
+            }
+            System.arraycopy(transliterated, 0, chars, length, transliterated.length);
+            length += transliterated.length;
+            only = contributions++ == 0 ? transliterated : null;
+        }
+
+        char[] result(final char[][] ascii) {
+            switch (length) {
+                case 0:
+                    return NOTHING;
+                case 1:
+                    final char c = chars[0];
+                    return c < 0x80 ? ascii[c] : new char[]{c};
+                default:
+                    return only != null ? only : Arrays.copyOf(chars, length);
+            }
+        }
+    }
 }
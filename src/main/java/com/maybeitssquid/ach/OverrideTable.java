@@ -0,0 +1,83 @@
+package com.maybeitssquid.ach;
+
+import java.util.Arrays;
+
+/**
+ * Immutable set of transliterations that override the computed ones for code points above ASCII, held as sorted
+ * parallel arrays so that a lookup is a binary search with no boxing. Changes return a new table, which lets
+ * {@link Normalizing} swap its overrides with a single volatile write while encoders keep reading the old table.
+ */
+final class OverrideTable {
+
+    static final OverrideTable EMPTY = new OverrideTable(new int[0], new char[0][]);
+
+    private final int[] codepoints;
+
+    private final char[][] values;
+
+    private OverrideTable(final int[] codepoints, final char[][] values) {
+        this.codepoints = codepoints;
+        this.values = values;
+    }
+
+    /**
+     * Looks up the override for a code point.
+     *
+     * @param codepoint the code point
+     * @return the override, or {@code null} if there is none
+     */
+    char[] get(final int codepoint) {
+        final int index = Arrays.binarySearch(codepoints, codepoint);
+        return index >= 0 ? values[index] : null;
+    }
+
+    /**
+     * Returns a table that has the same overrides as this one except for the given code point.
+     *
+     * @param codepoint the code point to override
+     * @param value     its transliteration
+     * @return the new table
+     */
+    OverrideTable with(final int codepoint, final char[] value) {
+        final int index = Arrays.binarySearch(codepoints, codepoint);
+        if (index >= 0) {
+            final char[][] changed = values.clone();
+            changed[index] = value;
+            return new OverrideTable(codepoints, changed);
+        }
+        final int insert = -index - 1;
+        final int[] grownCodepoints = new int[codepoints.length + 1];
+        final char[][] grownValues = new char[values.length + 1][];
+        System.arraycopy(codepoints, 0, grownCodepoints, 0, insert);
+        System.arraycopy(values, 0, grownValues, 0, insert);
+        grownCodepoints[insert] = codepoint;
+        grownValues[insert] = value;
+        System.arraycopy(codepoints, insert, grownCodepoints, insert + 1, codepoints.length - insert);
+        System.arraycopy(values, insert, grownValues, insert + 1, values.length - insert);
+        return new OverrideTable(grownCodepoints, grownValues);
+    }
+
+    /**
+     * Returns a table that has the same overrides as this one, less any for the given code point.
+     *
+     * @param codepoint the code point whose override to drop
+     * @return the new table, or this one if it has no override for the code point
+     */
+    OverrideTable without(final int codepoint) {
+        final int index = Arrays.binarySearch(codepoints, codepoint);
+        if (index < 0) {
+            return this;
+        }
+        final int[] shrunkCodepoints = new int[codepoints.length - 1];
+        final char[][] shrunkValues = new char[values.length - 1][];
+        System.arraycopy(codepoints, 0, shrunkCodepoints, 0, index);
+        System.arraycopy(values, 0, shrunkValues, 0, index);
+        System.arraycopy(codepoints, index + 1, shrunkCodepoints, index, codepoints.length - index - 1);
+        System.arraycopy(values, index + 1, shrunkValues, index, values.length - index - 1);
+        return new OverrideTable(shrunkCodepoints, shrunkValues);
+    }
+
+    int size() {
+        return codepoints.length;
+    }
+}
@@ -0,0 +1,330 @@
+package com.maybeitssquid.ach;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Declares the fields of a fixed-width ACH record, to be {@linkplain #compile(Charset) compiled} into a
+ * {@link CompiledRecordLayout} that writes records without formatting or encoding each field separately. Positions
+ * are counted from one, as in the NACHA rules. Positions that no field or constant covers are left as spaces.
+ *
+ * <p>The {@code fileHeader}, {@code batchHeader}, {@code entryDetail}, {@code addenda}, {@code batchControl} and
+ * {@code fileControl} functions declare the layouts of record types 1, 5, 6, 7, 8 and 9. Each call returns a new
+ * declaration, which can be extended before it is compiled. A declaration must not be changed by more than one thread
+ * at a time, but the layout compiled from it can be shared freely.</p>
+ */
+public final class RecordLayout {
+
+    /**
+     * Length in bytes of an ACH record.
+     */
+    public static final int RECORD_LENGTH = AchFileValidator.RECORD_LENGTH;
+
+    /**
+     * Which end of a field a value is written against.
+     */
+    public enum Justification {
+        /**
+         * The value starts at the first position and padding follows it.
+         */
+        LEFT,
+
+        /**
+         * The value ends at the last position and padding comes before it.
+         */
+        RIGHT
+    }
+
+    /**
+     * What a field may hold.
+     */
+    public enum Type {
+        /**
+         * Any text, transliterated by the charset and truncated to the width of the field.
+         */
+        ALPHANUMERIC,
+
+        /**
+         * Digits only. A value too wide for the field is rejected rather than truncated.
+         */
+        NUMERIC
+    }
+
+    /**
+     * One declared field.
+     */
+    static final class Field {
+        final String name;
+
+        /**
+         * Position of the first byte of the field in the record, counting from zero.
+         */
+        final int offset;
+
+        final int length;
+
+        final Justification justification;
+
+        final byte pad;
+
+        final Type type;
+
+        Field(final String name, final int offset, final int length, final Justification justification,
+              final byte pad, final Type type) {
+            this.name = name;
+            this.offset = offset;
+            this.length = length;
+            this.justification = justification;
+            this.pad = pad;
+            this.type = type;
+        }
+    }
+
+    private final List<Field> fields = new ArrayList<>();
+
+    /**
+     * The bytes of the record before any field is written, with zero marking a position that nothing covers yet.
+     */
+    private final byte[] template = new byte[RECORD_LENGTH];
+
+    /**
+     * Declares a left-justified, space-filled alphanumeric field.
+     *
+     * @param name   the name by which the compiled layout finds the field
+     * @param start  the position of the first byte of the field, counting from one
+     * @param length the width of the field in bytes
+     * @return this layout
+     * @throws IllegalArgumentException if the field does not fit in the record, overlaps another, or has a name
+     *                                  already in use
+     */
+    public RecordLayout alphanumeric(final String name, final int start, final int length) {
+        return field(name, start, length, Justification.LEFT, ' ', Type.ALPHANUMERIC);
+    }
+
+    /**
+     * Declares a right-justified, zero-filled numeric field.
+     *
+     * @param name   the name by which the compiled layout finds the field
+     * @param start  the position of the first byte of the field, counting from one
+     * @param length the width of the field in bytes
+     * @return this layout
+     * @throws IllegalArgumentException if the field does not fit in the record, overlaps another, or has a name
+     *                                  already in use
+     */
+    public RecordLayout numeric(final String name, final int start, final int length) {
+        return field(name, start, length, Justification.RIGHT, '0', Type.NUMERIC);
+    }
+
+    /**
+     * Declares a field.
+     *
+     * @param name          the name by which the compiled layout finds the field
+     * @param start         the position of the first byte of the field, counting from one
+     * @param length        the width of the field in bytes
+     * @param justification which end of the field a value is written against
+     * @param pad           the character that fills the rest of the field, which must be printable ASCII
+     * @param type          what the field may hold
+     * @return this layout
+     * @throws IllegalArgumentException if the field does not fit in the record, overlaps another, has a name already
+     *                                  in use, or pads with anything but printable ASCII
+     */
+    public RecordLayout field(final String name, final int start, final int length,
+                              final Justification justification, final char pad, final Type type) {
+        if (pad < 0x20 || pad > 0x7E) {
+            throw new IllegalArgumentException(String.format("Pad U+%04X of field %s is not printable ASCII",
+                    (int) pad, name));
+        }
+        for (final Field field : fields) {
+            if (field.name.equals(name)) {
+                throw new IllegalArgumentException("Field " + name + " is already declared");
+            }
+        }
+        claim(start, length, "Field " + name);
+        fields.add(new Field(name, start - 1, length, justification, (byte) pad, type));
+        // Until a value is written, a field holds nothing but its padding
+        for (int i = start - 1; i < start - 1 + length; i++) {
+            template[i] = (byte) pad;
+        }
+        return this;
+    }
+
+    /**
+     * Declares text that every record of this layout holds, such as the record type code.
+     *
+     * @param start the position of the first byte of the text, counting from one
+     * @param value the text, which must be printable ASCII
+     * @return this layout
+     * @throws IllegalArgumentException if the text does not fit in the record, overlaps a field or other constant,
+     *                                  or is not printable ASCII
+     */
+    public RecordLayout constant(final int start, final String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) < 0x20 || value.charAt(i) > 0x7E) {
+                throw new IllegalArgumentException("Constant \"" + value + "\" is not printable ASCII");
+            }
+        }
+        claim(start, value.length(), "Constant \"" + value + "\"");
+        for (int i = 0; i < value.length(); i++) {
+            template[start - 1 + i] = (byte) value.charAt(i);
+        }
+        return this;
+    }
+
+    private void claim(final int start, final int length, final String what) {
+        if (start < 1 || length < 1 || start - 1 + length > RECORD_LENGTH) {
+            throw new IllegalArgumentException(what + " at " + start + " for " + length + " does not fit in a record");
+        }
+        for (int i = start - 1; i < start - 1 + length; i++) {
+            if (template[i] != 0) {
+                throw new IllegalArgumentException(what + " overlaps position " + (i + 1));
+            }
+        }
+    }
+
+    /**
+     * Compiles the layout for {@code X-ACH}.
+     *
+     * @return the compiled layout
+     */
+    public CompiledRecordLayout compile() {
+        return compile(TransliteratingASCIIProvider.lookup("X-ACH"));
+    }
+
+    /**
+     * Compiles the layout. Later changes to this declaration do not affect the compiled layout.
+     *
+     * @param charset the charset whose transliteration fills alphanumeric fields
+     * @return the compiled layout
+     * @throws IllegalArgumentException if the charset is not a {@link TransliteratingASCII}
+     */
+    public CompiledRecordLayout compile(final Charset charset) {
+        if (!(charset instanceof TransliteratingASCII)) {
+            throw new IllegalArgumentException("Charset " + charset + " does not transliterate to ASCII");
+        }
+        final byte[] bytes = template.clone();
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] == 0) {
+                bytes[i] = ' ';
+            }
+        }
+        return new CompiledRecordLayout((TransliteratingASCII) charset, bytes,
+                Collections.unmodifiableList(new ArrayList<>(fields)));
+    }
+
+    /**
+     * Declares the file header record, type 1.
+     *
+     * @return a new declaration
+     */
+    public static RecordLayout fileHeader() {
+        return new RecordLayout()
+                .constant(1, "1")
+                .constant(2, "01")
+                .field("immediateDestination", 4, 10, Justification.RIGHT, ' ', Type.ALPHANUMERIC)
+                .field("immediateOrigin", 14, 10, Justification.RIGHT, ' ', Type.ALPHANUMERIC)
+                .numeric("fileCreationDate", 24, 6)
+                .numeric("fileCreationTime", 30, 4)
+                .alphanumeric("fileIdModifier", 34, 1)
+                .constant(35, "094")
+                .constant(38, "10")
+                .constant(40, "1")
+                .alphanumeric("immediateDestinationName", 41, 23)
+                .alphanumeric("immediateOriginName", 64, 23)
+                .alphanumeric("referenceCode", 87, 8);
+    }
+
+    /**
+     * Declares the company/batch header record, type 5.
+     *
+     * @return a new declaration
+     */
+    public static RecordLayout batchHeader() {
+        return new RecordLayout()
+                .constant(1, "5")
+                .numeric("serviceClassCode", 2, 3)
+                .alphanumeric("companyName", 5, 16)
+                .alphanumeric("companyDiscretionaryData", 21, 20)
+                .alphanumeric("companyIdentification", 41, 10)
+                .alphanumeric("standardEntryClassCode", 51, 3)
+                .alphanumeric("companyEntryDescription", 54, 10)
+                .alphanumeric("companyDescriptiveDate", 64, 6)
+                .numeric("effectiveEntryDate", 70, 6)
+                .alphanumeric("settlementDate", 76, 3)
+                .alphanumeric("originatorStatusCode", 79, 1)
+                .numeric("originatingDfiIdentification", 80, 8)
+                .numeric("batchNumber", 88, 7);
+    }
+
+    /**
+     * Declares the entry detail record, type 6.
+     *
+     * @return a new declaration
+     */
+    public static RecordLayout entryDetail() {
+        return new RecordLayout()
+                .constant(1, "6")
+                .numeric("transactionCode", 2, 2)
+                .numeric("receivingDfiIdentification", 4, 8)
+                .numeric("checkDigit", 12, 1)
+                .alphanumeric("dfiAccountNumber", 13, 17)
+                .numeric("amount", 30, 10)
+                .alphanumeric("individualIdentificationNumber", 40, 15)
+                .alphanumeric("individualName", 55, 22)
+                .alphanumeric("discretionaryData", 77, 2)
+                .numeric("addendaRecordIndicator", 79, 1)
+                .numeric("traceNumber", 80, 15);
+    }
+
+    /**
+     * Declares the addenda record, type 7.
+     *
+     * @return a new declaration
+     */
+    public static RecordLayout addenda() {
+        return new RecordLayout()
+                .constant(1, "7")
+                .numeric("addendaTypeCode", 2, 2)
+                .alphanumeric("paymentRelatedInformation", 4, 80)
+                .numeric("addendaSequenceNumber", 84, 4)
+                .numeric("entryDetailSequenceNumber", 88, 7);
+    }
+
+    /**
+     * Declares the company/batch control record, type 8.
+     *
+     * @return a new declaration
+     */
+    public static RecordLayout batchControl() {
+        return new RecordLayout()
+                .constant(1, "8")
+                .numeric("serviceClassCode", 2, 3)
+                .numeric("entryAddendaCount", 5, 6)
+                .numeric("entryHash", 11, 10)
+                .numeric("totalDebitEntryDollarAmount", 21, 12)
+                .numeric("totalCreditEntryDollarAmount", 33, 12)
+                .alphanumeric("companyIdentification", 45, 10)
+                .alphanumeric("messageAuthenticationCode", 55, 19)
+                .alphanumeric("reserved", 74, 6)
+                .numeric("originatingDfiIdentification", 80, 8)
+                .numeric("batchNumber", 88, 7);
+    }
+
+    /**
+     * Declares the file control record, type 9.
+     *
+     * @return a new declaration
+     */
+    public static RecordLayout fileControl() {
+        return new RecordLayout()
+                .constant(1, "9")
+                .numeric("batchCount", 2, 6)
+                .numeric("blockCount", 8, 6)
+                .numeric("entryAddendaCount", 14, 8)
+                .numeric("entryHash", 22, 10)
+                .numeric("totalDebitEntryDollarAmount", 32, 12)
+                .numeric("totalCreditEntryDollarAmount", 44, 12)
+                .alphanumeric("reserved", 56, 39);
+    }
+}
@@ -1,14 +1,32 @@
 package com.maybeitssquid.ach;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.CharBuffer;
 import java.nio.charset.*;
+import java.util.List;
+import java.util.function.IntConsumer;
 import java.util.function.IntFunction;
 
 public class TransliteratingASCII extends Charset {
 
+    /**
+     * System property that makes every charset share one encoder class and one decoder class when set to
+     * {@code false}. By default, on Java 17 and later, each charset gets classes of its own, as described by
+     * {@link CoderClasses}.
+     */
+    public static final String SPECIALIZE_PROPERTY = "com.maybeitssquid.ach.specializeCoders";
+
+    private static final boolean SPECIALIZE = !"false".equalsIgnoreCase(System.getProperty(SPECIALIZE_PROPERTY));
+
     private final IntFunction<char[]> transliterator;
 
+    private final ByteTransliterator bytes;
+
     /**
      * Initializes a new charset with the given canonical name and alias
      * set.
@@ -20,6 +38,350 @@ public class TransliteratingASCII extends Charset {
     protected TransliteratingASCII(final String canonicalName, final String[] aliases, final IntFunction<char[]> transliterator) {
         super(canonicalName, aliases);
         this.transliterator = transliterator;
+        this.bytes = ByteTransliterator.of(transliterator);
+    }
+
+    /**
+     * Returns the range of ASCII values that the transliterator passes through unchanged, packed as described by
+     * {@link Filtering#identityRange()}. Transliterators other than {@link Filtering} and
+     * {@link CompiledTransliterator} report an empty range.
+     */
+    int identityRange() {
+        return identityRange(transliterator);
+    }
+
+    private static int identityRange(final IntFunction<char[]> transliterator) {
+        if (transliterator instanceof LengthPreserving) {
+            // The ASCII range passes straight through to the transliterator underneath
+            return identityRange(((LengthPreserving) transliterator).source());
+        }
+        if (transliterator instanceof CompiledTransliterator) {
+            return ((CompiledTransliterator) transliterator).identityRange();
+        }
+        return transliterator instanceof Filtering ? ((Filtering) transliterator).identityRange() : 0x7F00;
+    }
+
+    /**
+     * Returns the transliterator that writes this charset's encodings as bytes, for callers that fill fixed-width
+     * fields without an encoder.
+     */
+    ByteTransliterator byteTransliterator() {
+        return bytes;
+    }
+
+    /**
+     * Returns this charset's transliterator if it writes exactly one byte per code point.
+     *
+     * @return the transliterator, or {@code null} if it can change the length of text
+     */
+    LengthPreserving lengthPreserving() {
+        return transliterator instanceof LengthPreserving ? (LengthPreserving) transliterator : null;
+    }
+
+    /**
+     * Reports on the memo behind this charset's encoder.
+     *
+     * @return a snapshot of the memo's counters, or {@code null} if the transliterator does not memoize
+     */
+    public CacheStatistics getCacheStatistics() {
+        final IntFunction<char[]> memo = transliterator instanceof LengthPreserving
+                ? ((LengthPreserving) transliterator).source() : transliterator;
+        return memo instanceof Normalizing ? ((Normalizing) memo).getCacheStatistics() : null;
+    }
+
+    /**
+     * Tests whether the transliterator absorbs a combining mark into the character before it, as described by
+     * {@link Filtering#combines(int)}.
+     */
+    boolean combines(final int codepoint) {
+        return combines(transliterator, codepoint);
+    }
+
+    private static boolean combines(final IntFunction<char[]> transliterator, final int codepoint) {
+        if (transliterator instanceof Filtering) {
+            return ((Filtering) transliterator).combines(codepoint);
+        }
+        return transliterator instanceof CompiledTransliterator
+                && ((CompiledTransliterator) transliterator).combines(codepoint);
+    }
+
+    private static final VarHandle WORDS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final long ONES = 0x0101010101010101L;
+
+    private static final long HIGHS = 0x8080808080808080L;
+
+    /**
+     * Tests whether all eight bytes packed in a word are within {@code [low, high]}, using SWAR (SIMD within a
+     * register) arithmetic. A byte with its high bit set fails outright. Once that is ruled out, subtracting
+     * {@code low} from every byte sets the high bit of the lowest byte that is below {@code low}, and adding
+     * {@code 0x7F - high} sets the high bit of every byte above {@code high}, without carries crossing bytes.
+     *
+     * @param word eight bytes
+     * @param low  the lowest allowed value, at most {@code 0x7F}
+     * @param high the highest allowed value, at most {@code 0x7F}
+     * @return whether every byte is in range
+     */
+    static boolean isWithin(final long word, final int low, final int high) {
+        final long below = (word - ONES * low) & ~word;
+        final long above = word + ONES * (0x7F - high);
+        return ((word | below | above) & HIGHS) == 0;
+    }
+
+    /**
+     * Finds the end of the leading bytes that are within {@code [low, high]}, checking a word at a time.
+     *
+     * @param src  the bytes
+     * @param from the position of the first byte to check
+     * @param to   the position just past the last byte to check
+     * @param low  the lowest allowed value, at most {@code 0x7F}
+     * @param high the highest allowed value, at most {@code 0x7F}
+     * @return the position of the first byte out of range, or {@code to} if there is none
+     */
+    static int span(final byte[] src, final int from, final int to, final int low, final int high) {
+        int i = from;
+        while (i + Long.BYTES <= to && isWithin((long) WORDS.get(src, i), low, high)) {
+            i += Long.BYTES;
+        }
+        while (i < to && src[i] >= low && src[i] <= high) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * The bytes that this charset's decoder accepts, along with what they were computed from. A {@link Filtering}
+     * transliterator can change, so the snapshot is taken again whenever its table has been replaced.
+     */
+    private volatile Allowed allowed;
+
+    static final class Allowed {
+
+        /**
+         * The table or transliterator that the snapshot was computed from.
+         */
+        final Object source;
+
+        final int low;
+
+        final int high;
+
+        /**
+         * Bit {@code b} is set when byte {@code b} is accepted, for {@code b} from {@code 0x00} through {@code 0x3F}.
+         */
+        final long lower;
+
+        /**
+         * Bit {@code b - 0x40} is set when byte {@code b} is accepted, for {@code b} from {@code 0x40} through
+         * {@code 0x7F}.
+         */
+        final long upper;
+
+        Allowed(final Object source, final IntFunction<char[]> transliterator) {
+            this.source = source;
+            final int identity = identityRange(transliterator);
+            this.low = identity >>> 8;
+            this.high = identity & 0xFF;
+            long lower = 0;
+            long upper = 0;
+            for (int b = 0; b < 0x80; b++) {
+                final char[] transliterated = transliterator.apply(b);
+                if (transliterated != null && transliterated.length > 0) {
+                    if (b < 0x40) {
+                        lower |= 1L << b;
+                    } else {
+                        upper |= 1L << (b - 0x40);
+                    }
+                }
+            }
+            this.lower = lower;
+            this.upper = upper;
+        }
+
+        /**
+         * Tells whether the decoder accepts a byte.
+         *
+         * @param value the byte, either signed or unsigned
+         * @return whether it is accepted
+         */
+        boolean accepts(final int value) {
+            if (value < 0 || value >= 0x80) {
+                return false;
+            }
+            return ((value < 0x40 ? lower : upper) >>> (value & 0x3F) & 1) != 0;
+        }
+
+        /**
+         * Finds the first byte that is not accepted.
+         *
+         * @return the position of the byte, or {@code to} if there is none
+         */
+        int scan(final byte[] src, final int from, final int to) {
+            int i = from;
+            while (i < to) {
+                i = low <= high ? span(src, i, to, low, high) : i;
+                if (i == to || !accepts(src[i])) {
+                    return i;
+                }
+                i++;
+            }
+            return to;
+        }
+
+        /**
+         * Finds the first byte that is not accepted, reading a direct buffer by absolute position.
+         *
+         * @return the position of the byte, or {@code to} if there is none
+         */
+        int scan(final ByteBuffer src, final int from, final int to) {
+            int i = from;
+            final boolean words = low <= high;
+            while (i < to) {
+                // isWithin tests every byte of the word alike, so the buffer's byte order does not matter
+                if (words && i + Long.BYTES <= to && isWithin(src.getLong(i), low, high)) {
+                    i += Long.BYTES;
+                } else if (accepts(src.get(i))) {
+                    i++;
+                } else {
+                    return i;
+                }
+            }
+            return to;
+        }
+
+        /**
+         * Finds the first character that is not the ASCII character of an accepted byte.
+         *
+         * @return the position of the character, or {@code to} if there is none
+         */
+        int scan(final CharSequence src, final int from, final int to) {
+            for (int i = from; i < to; i++) {
+                final char c = src.charAt(i);
+                if ((c < low || c > high) && !accepts(c)) {
+                    return i;
+                }
+            }
+            return to;
+        }
+    }
+
+    /**
+     * Returns the bytes that this charset's decoder currently accepts, taking a new snapshot if the transliteration
+     * table has changed since the last one.
+     */
+    Allowed allowed() {
+        final IntFunction<char[]> ascii = transliterator instanceof LengthPreserving
+                ? ((LengthPreserving) transliterator).source() : transliterator;
+        final Object source = ascii instanceof Filtering ? ((Filtering) ascii).ascii() : transliterator;
+        Allowed snapshot = this.allowed;
+        if (snapshot == null || snapshot.source != source) {
+            snapshot = new Allowed(source, transliterator);
+            this.allowed = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Finds the first byte in an array that this charset's decoder would not accept, without decoding anything. This
+     * neither allocates nor throws, so it suits checks that only need to know whether input is clean.
+     *
+     * @param src  the bytes to check
+     * @param from the position of the first byte to check
+     * @param to   the position just past the last byte to check
+     * @return the position of the first byte that is not accepted, or {@code -1} if every byte is
+     */
+    public int indexOfDisallowed(final byte[] src, final int from, final int to) {
+        final int i = allowed().scan(src, from, to);
+        return i == to ? -1 : i;
+    }
+
+    /**
+     * Finds the first byte between a buffer's position and its limit that this charset's decoder would not accept.
+     * The buffer's position is not changed.
+     *
+     * @param src the bytes to check
+     * @return the index in the buffer of the first byte that is not accepted, or {@code -1} if every byte is
+     */
+    public int indexOfDisallowed(final ByteBuffer src) {
+        final int i = scan(allowed(), src, src.position(), src.limit());
+        return i == src.limit() ? -1 : i;
+    }
+
+    /**
+     * Finds the first character that is not the ASCII character of a byte that this charset's decoder would accept.
+     * Text that passes can be written in this charset exactly as it is, without transliteration.
+     *
+     * @param src the characters to check
+     * @return the index of the first character that is not allowed, or {@code -1} if every character is
+     */
+    public int indexOfDisallowed(final CharSequence src) {
+        final int i = allowed().scan(src, 0, src.length());
+        return i == src.length() ? -1 : i;
+    }
+
+    /**
+     * Passes the position of every byte in an array that this charset's decoder would not accept to an action.
+     *
+     * @param src    the bytes to check
+     * @param from   the position of the first byte to check
+     * @param to     the position just past the last byte to check
+     * @param action called with the position of each byte that is not accepted, in order
+     * @return the number of bytes that are not accepted
+     */
+    public int forEachDisallowed(final byte[] src, final int from, final int to, final IntConsumer action) {
+        final Allowed snapshot = allowed();
+        int count = 0;
+        for (int i = snapshot.scan(src, from, to); i < to; i = snapshot.scan(src, i + 1, to)) {
+            action.accept(i);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Passes the index of every byte between a buffer's position and its limit that this charset's decoder would not
+     * accept to an action. The buffer's position is not changed.
+     *
+     * @param src    the bytes to check
+     * @param action called with the index in the buffer of each byte that is not accepted, in order
+     * @return the number of bytes that are not accepted
+     */
+    public int forEachDisallowed(final ByteBuffer src, final IntConsumer action) {
+        final Allowed snapshot = allowed();
+        final int to = src.limit();
+        int count = 0;
+        for (int i = scan(snapshot, src, src.position(), to); i < to; i = scan(snapshot, src, i + 1, to)) {
+            action.accept(i);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Passes the index of every character that is not the ASCII character of a byte that this charset's decoder
+     * would accept to an action.
+     *
+     * @param src    the characters to check
+     * @param action called with the index of each character that is not allowed, in order
+     * @return the number of characters that are not allowed
+     */
+    public int forEachDisallowed(final CharSequence src, final IntConsumer action) {
+        final Allowed snapshot = allowed();
+        final int to = src.length();
+        int count = 0;
+        for (int i = snapshot.scan(src, 0, to); i < to; i = snapshot.scan(src, i + 1, to)) {
+            action.accept(i);
+            count++;
+        }
+        return count;
+    }
+
+    private static int scan(final Allowed snapshot, final ByteBuffer src, final int from, final int to) {
+        if (src.hasArray()) {
+            final int offset = src.arrayOffset();
+            return snapshot.scan(src.array(), offset + from, offset + to) - offset;
+        }
+        return snapshot.scan(src, from, to);
     }
 
     public boolean containsASCII() {
@@ -45,61 +407,501 @@ public class TransliteratingASCII extends Charset {
         }
     }
 
+    /**
+     * Constructor of this charset's decoder class, created on first use by {@link CoderClasses}.
+     */
+    private volatile MethodHandle decoders;
+
+    /**
+     * Constructor of this charset's encoder class, created on first use by {@link CoderClasses}.
+     */
+    private volatile MethodHandle encoders;
+
     @Override
     public CharsetDecoder newDecoder() {
-        return new CharsetDecoder(this, 1F, 1F) {
-            @Override
-            protected CoderResult decodeLoop(final ByteBuffer in, final CharBuffer out) {
-                while (in.hasRemaining()) {
-                    final byte b = in.get(in.position());
-                    if (b >= 0) {
-                        final char[] transliterated = transliterator.apply(b);
-                        if (transliterated == null || transliterated.length == 0) {
-                            return CoderResult.unmappableForLength(1);
-                        } else if (transliterated.length <= out.remaining()) {
-                            in.position(in.position() + 1);
-                            out.put(transliterated);
-                        } else {
-                            return CoderResult.OVERFLOW;
+        MethodHandle constructor = decoders;
+        if (constructor == null) {
+            constructor = coders(Decoder.class, CharsetDecoder.class);
+            decoders = constructor;
+        }
+        try {
+            return (CharsetDecoder) constructor.invokeExact(this);
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public CharsetEncoder newEncoder() {
+        MethodHandle constructor = encoders;
+        if (constructor == null) {
+            constructor = coders(Encoder.class, CharsetEncoder.class);
+            encoders = constructor;
+        }
+        try {
+            return (CharsetEncoder) constructor.invokeExact(this);
+        } catch (final RuntimeException | Error e) {
+            throw e;
+        } catch (final Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Gets the constructor for this charset's coders, which takes the charset and returns the coder as its superclass.
+     * Threads that race here may each get a class of their own, which is harmless.
+     */
+    private MethodHandle coders(final Class<?> template, final Class<?> type) {
+        final List<?> bound = SPECIALIZE ? List.of(transliterator, bytes) : null;
+        return CoderClasses.constructor(MethodHandles.lookup(), template, bound)
+                .asType(MethodType.methodType(type, TransliteratingASCII.class));
+    }
+
+    /**
+     * Number of elements copied at a time between a direct buffer and the heap arrays that the coder loops work on.
+     */
+    private static final int STAGING = 1024;
+
+    /**
+     * Decoder for any charset. {@link CoderClasses} may define a copy of this class for each charset, in which case
+     * {@link #TRANSLITERATOR} holds that charset's transliterator as a constant. In the shared class it is
+     * {@code null}, and the transliterator is read from the charset.
+     */
+    private static final class Decoder extends CharsetDecoder {
+
+        private static final IntFunction<char[]> TRANSLITERATOR = CoderClasses.bound(MethodHandles.lookup(), 0);
+
+        private ByteBuffer stagedIn;
+
+        private CharBuffer stagedOut;
+
+        private Latin1Runs runs;
+
+        Decoder(final TransliteratingASCII charset) {
+            super(charset, 1F, 1F);
+        }
+
+        private Latin1Runs runs() {
+            if (runs == null) {
+                runs = new Latin1Runs();
+            }
+            return runs;
+        }
+
+        private IntFunction<char[]> transliterator() {
+            return TRANSLITERATOR != null ? TRANSLITERATOR : ((TransliteratingASCII) charset()).transliterator;
+        }
+
+        @Override
+        protected CoderResult decodeLoop(final ByteBuffer in, final CharBuffer out) {
+            if (in.hasArray() && out.hasArray()) {
+                return decodeArrayLoop(in, out);
+            }
+            while (true) {
+                final int consumed = in.position();
+                final int produced = out.position();
+                final CoderResult result = decodeStaged(in, out);
+                final boolean progress = in.position() != consumed || out.position() != produced;
+                if (!progress || !(result.isUnderflow() ? in.hasRemaining() : result.isOverflow() && out.hasRemaining())) {
+                    return result;
+                }
+            }
+        }
+
+        /**
+         * Decodes one chunk by copying whichever of the buffers is not array-backed through a heap staging buffer.
+         */
+        private CoderResult decodeStaged(final ByteBuffer in, final CharBuffer out) {
+            final ByteBuffer src;
+            if (in.hasArray()) {
+                src = in;
+            } else {
+                if (stagedIn == null) {
+                    stagedIn = ByteBuffer.allocate(STAGING);
+                }
+                final int n = Math.min(in.remaining(), STAGING);
+                stagedIn.clear();
+                final int start = in.position();
+                in.get(stagedIn.array(), 0, n);
+                in.position(start);
+                stagedIn.limit(n);
+                src = stagedIn;
+            }
+
+            final CharBuffer dst;
+            if (out.hasArray()) {
+                dst = out;
+            } else {
+                if (stagedOut == null) {
+                    stagedOut = CharBuffer.allocate(STAGING);
+                }
+                stagedOut.clear();
+                stagedOut.limit(Math.min(out.remaining(), STAGING));
+                dst = stagedOut;
+            }
+
+            final CoderResult result = decodeArrayLoop(src, dst);
+            if (src != in) {
+                in.position(in.position() + src.position());
+            }
+            if (dst != out) {
+                dst.flip();
+                out.put(dst);
+            }
+            return result;
+        }
+
+        private CoderResult decodeArrayLoop(final ByteBuffer in, final CharBuffer out) {
+            final byte[] src = in.array();
+            int sp = in.arrayOffset() + in.position();
+            final int sl = in.arrayOffset() + in.limit();
+            final char[] dst = out.array();
+            int dp = out.arrayOffset() + out.position();
+            final int dl = out.arrayOffset() + out.limit();
+
+            final IntFunction<char[]> transliterator = transliterator();
+            final int identity = identityRange(transliterator);
+            final int low = identity >>> 8;
+            final int high = identity & 0xFF;
+            final boolean identical = low <= high;
+            try {
+                while (sp < sl) {
+                    final int run = identical ? span(src, sp, sp + Math.min(sl - sp, dl - dp), low, high) - sp : 0;
+                    if (run >= Latin1Runs.MINIMUM) {
+                        runs().widen(in, sp, out, dp, run);
+                    } else {
+                        for (int i = 0; i < run; i++) {
+                            dst[dp + i] = (char) src[sp + i];
+                        }
+                    }
+                    sp += run;
+                    dp += run;
+                    if (sp == sl) {
+                        break;
+                    }
+
+                    // The run ended at a byte to transliterate or reject, or at the end of the room in the output
+                    final byte b = src[sp];
+                    final char[] transliterated = b < 0 ? null : transliterator.apply(b);
+                    if (transliterated == null || transliterated.length == 0) {
+                        final boolean malformed = b < 0;
+                        final CodingErrorAction action = malformed ? malformedInputAction() : unmappableCharacterAction();
+                        if (action == CodingErrorAction.REPORT) {
+                            return malformed ? CoderResult.malformedForLength(1) : CoderResult.unmappableForLength(1);
                         }
+                        // Ignore or replace each bad byte here, as the superclass would for one error at a time
+                        final String replacement = action == CodingErrorAction.REPLACE ? replacement() : "";
+                        do {
+                            if (replacement.length() > dl - dp) {
+                                return CoderResult.OVERFLOW;
+                            }
+                            replacement.getChars(0, replacement.length(), dst, dp);
+                            dp += replacement.length();
+                            sp++;
+                        } while (malformed && sp < sl && src[sp] < 0);
+                    } else if (transliterated.length > dl - dp) {
+                        return CoderResult.OVERFLOW;
+                    } else if (transliterated.length == 1) {
+                        dst[dp++] = transliterated[0];
+                        sp++;
                     } else {
-                        return CoderResult.malformedForLength(1);
+                        System.arraycopy(transliterated, 0, dst, dp, transliterated.length);
+                        dp += transliterated.length;
+                        sp++;
                     }
                 }
                 return CoderResult.UNDERFLOW;
+            } finally {
+                in.position(sp - in.arrayOffset());
+                out.position(dp - out.arrayOffset());
             }
-        };
+        }
     }
 
-    @Override
-    public CharsetEncoder newEncoder() {
-        return new CharsetEncoder(this, 1F, 1F, new byte[]{(byte) '?'}) {
-            @Override
-            protected CoderResult encodeLoop(final CharBuffer in, final ByteBuffer out) {
-                while (in.hasRemaining()) {
-                    final int codepoint = Character.codePointAt(in, 0);
-                    final int length = Character.isSupplementaryCodePoint(codepoint) ? 2 : 1;
-
-                    final char[] transliterated = transliterator.apply(codepoint);
-                    if (transliterated.length == 0) {
-                        return CoderResult.unmappableForLength(length);
-                    } else if (transliterated.length > out.remaining()) {
+    /**
+     * The last character encoded was not a letter, or there was none, so a combining mark that follows is an error of
+     * its own. Under normalization a mark only combines into a letter, and dropping one after a space or punctuation
+     * would lose it without a trace.
+     */
+    private static final int NO_BASE = 0;
+
+    /**
+     * The last character encoded was a letter and was transliterated, so combining marks that follow it are dropped.
+     */
+    private static final int MAPPED_BASE = 1;
+
+    /**
+     * The last character was reported as unmappable along with its combining marks, so any further marks belong to
+     * the same error and are dropped.
+     */
+    private static final int UNMAPPED_BASE = 2;
+
+    /**
+     * Reports whether an encoder still has its default replacement, which {@link AchCoders} checks on every borrow
+     * without the copy that {@link CharsetEncoder#replacement()} makes. The encoder classes implement it, including
+     * the copies that {@link CoderClasses} defines, which cannot be cast to {@link Encoder}.
+     */
+    interface Replacement {
+        boolean isDefaultReplacement();
+    }
+
+    /**
+     * Encoder for any charset. {@link CoderClasses} may define a copy of this class for each charset, in which case
+     * {@link #TRANSLITERATOR} and {@link #BYTES} hold that charset's transliterators as constants. In the shared class
+     * they are {@code null}, and the transliterators are read from the charset.
+     */
+    private static final class Encoder extends CharsetEncoder implements Replacement {
+
+        private static final IntFunction<char[]> TRANSLITERATOR = CoderClasses.bound(MethodHandles.lookup(), 0);
+
+        private static final ByteTransliterator BYTES = CoderClasses.bound(MethodHandles.lookup(), 1);
+
+        private CharBuffer stagedIn;
+
+        private ByteBuffer stagedOut;
+
+        private Latin1Runs runs;
+
+        /**
+         * The replacement bytes, kept here because {@link #replacement()} returns a new copy on every call.
+         */
+        private byte[] replacement;
+
+        private boolean defaultReplacement;
+
+        /**
+         * What combining marks at the start of the next input attach to, carried across calls so that a base
+         * character and its marks are handled alike wherever the input is split.
+         */
+        private int base = NO_BASE;
+
+        Encoder(final TransliteratingASCII charset) {
+            super(charset, 1F, 1F, new byte[]{(byte) '?'});
+        }
+
+        private IntFunction<char[]> transliterator() {
+            return TRANSLITERATOR != null ? TRANSLITERATOR : ((TransliteratingASCII) charset()).transliterator;
+        }
+
+        private ByteTransliterator bytes() {
+            return BYTES != null ? BYTES : ((TransliteratingASCII) charset()).bytes;
+        }
+
+        private Latin1Runs runs() {
+            if (runs == null) {
+                runs = new Latin1Runs();
+            }
+            return runs;
+        }
+
+        @Override
+        protected void implReset() {
+            base = NO_BASE;
+        }
+
+        @Override
+        protected void implReplaceWith(final byte[] newReplacement) {
+            replacement = newReplacement.clone();
+            defaultReplacement = replacement.length == 1 && replacement[0] == '?';
+        }
+
+        @Override
+        public boolean isDefaultReplacement() {
+            return defaultReplacement;
+        }
+
+        /**
+         * Checks the replacement against the transliteration table rather than by running it through a new decoder,
+         * which the superclass does on every construction. A replacement is legal if every byte decodes.
+         */
+        @Override
+        public boolean isLegalReplacement(final byte[] repl) {
+            for (final byte b : repl) {
+                if (b < 0) {
+                    return false;
+                }
+                final char[] decoded = transliterator().apply(b);
+                if (decoded == null || decoded.length == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        protected CoderResult encodeLoop(final CharBuffer in, final ByteBuffer out) {
+            if (in.hasArray() && out.hasArray()) {
+                return encodeArrayLoop(in, out);
+            }
+            while (true) {
+                final int consumed = in.position();
+                final int produced = out.position();
+                final CoderResult result = encodeStaged(in, out);
+                final boolean progress = in.position() != consumed || out.position() != produced;
+                if (!progress || !(result.isUnderflow() ? in.hasRemaining() : result.isOverflow() && out.hasRemaining())) {
+                    return result;
+                }
+            }
+        }
+
+        /**
+         * Encodes one chunk by copying whichever of the buffers is not array-backed through a heap staging buffer.
+         */
+        private CoderResult encodeStaged(final CharBuffer in, final ByteBuffer out) {
+            final CharBuffer src;
+            if (in.hasArray()) {
+                src = in;
+            } else {
+                if (stagedIn == null) {
+                    stagedIn = CharBuffer.allocate(STAGING);
+                }
+                final int n = Math.min(in.remaining(), STAGING);
+                stagedIn.clear();
+                final int start = in.position();
+                in.get(stagedIn.array(), 0, n);
+                in.position(start);
+                stagedIn.limit(n);
+                src = stagedIn;
+            }
+
+            final ByteBuffer dst;
+            if (out.hasArray()) {
+                dst = out;
+            } else {
+                if (stagedOut == null) {
+                    stagedOut = ByteBuffer.allocate(STAGING);
+                }
+                stagedOut.clear();
+                stagedOut.limit(Math.min(out.remaining(), STAGING));
+                dst = stagedOut;
+            }
+
+            final CoderResult result = encodeArrayLoop(src, dst);
+            if (src != in) {
+                in.position(in.position() + src.position());
+            }
+            if (dst != out) {
+                dst.flip();
+                out.put(dst);
+            }
+            return result;
+        }
+
+        private CoderResult encodeArrayLoop(final CharBuffer in, final ByteBuffer out) {
+            final char[] src = in.array();
+            int sp = in.arrayOffset() + in.position();
+            final int sl = in.arrayOffset() + in.limit();
+            final byte[] dst = out.array();
+            int dp = out.arrayOffset() + out.position();
+            final int dl = out.arrayOffset() + out.limit();
+
+            final IntFunction<char[]> transliterator = transliterator();
+            final ByteTransliterator bytes = bytes();
+            final int identity = identityRange(transliterator);
+            final int low = identity >>> 8;
+            final int high = identity & 0xFF;
+            int base = this.base;
+            try {
+                while (sp < sl) {
+                    final char c = src[sp];
+                    if (c >= low && c <= high) {
+                        if (dp == dl) {
+                            return CoderResult.OVERFLOW;
+                        }
+                        final int length = Math.min(sl - sp, dl - dp);
+                        int copied;
+                        if (length <= Latin1Runs.MINIMUM || AsciiRuns.isVectorized()) {
+                            copied = AsciiRuns.narrow(src, sp, dst, dp, length, low, high);
+                        } else {
+                            // Only a run that is still going after the first few characters is worth handing over
+                            copied = AsciiRuns.narrow(src, sp, dst, dp, Latin1Runs.MINIMUM, low, high);
+                            if (copied == Latin1Runs.MINIMUM) {
+                                copied += runs().narrow(in, sp + copied, out, dp + copied, length - copied, low, high);
+                            }
+                        }
+                        sp += copied;
+                        dp += copied;
+                        base = Character.isLetter(src[sp - 1]) ? MAPPED_BASE : NO_BASE;
+                        continue;
+                    }
+
+                    final int codepoint;
+                    final int length;
+                    if (Character.isHighSurrogate(c)) {
+                        if (sp + 1 == sl) {
+                            // Wait for the low surrogate, which may arrive with the next buffer
+                            return CoderResult.UNDERFLOW;
+                        } else if (Character.isLowSurrogate(src[sp + 1])) {
+                            codepoint = Character.toCodePoint(c, src[sp + 1]);
+                            length = 2;
+                        } else {
+                            codepoint = c;
+                            length = 1;
+                        }
+                    } else {
+                        codepoint = c;
+                        length = 1;
+                    }
+
+                    final int written = bytes.transliterate(codepoint, dst, dp, dl);
+                    if (written > 0) {
+                        dp += written;
+                        sp += length;
+                        base = Character.isLetter(codepoint) ? MAPPED_BASE : NO_BASE;
+                    } else if (written != ByteTransliterator.UNMAPPABLE) {
                         return CoderResult.OVERFLOW;
+                    } else if (base != NO_BASE && combines(transliterator, codepoint)) {
+                        sp += length;
                     } else {
-                        final int mark = out.position();
-                        for (final char c : transliterated) {
-                            if (c > 0x007F) {
-                                out.position(mark);
-                                return CoderResult.unmappableForLength(length);
-                            } else {
-                                out.put((byte) c);
+                        final int end = withMarks(transliterator, src, sp + length, sl);
+                        final CodingErrorAction action = unmappableCharacterAction();
+                        if (action == CodingErrorAction.REPORT) {
+                            base = UNMAPPED_BASE;
+                            return CoderResult.unmappableForLength(end - sp);
+                        } else if (action == CodingErrorAction.REPLACE) {
+                            // Replace the error here, as the superclass would, rather than return for each one
+                            if (replacement.length > dl - dp) {
+                                return CoderResult.OVERFLOW;
                             }
+                            System.arraycopy(replacement, 0, dst, dp, replacement.length);
+                            dp += replacement.length;
                         }
-                        in.position(in.position() + length);
+                        base = UNMAPPED_BASE;
+                        sp = end;
                     }
                 }
                 return CoderResult.UNDERFLOW;
+            } finally {
+                this.base = base;
+                in.position(sp - in.arrayOffset());
+                out.position(dp - out.arrayOffset());
+            }
+        }
+
+        /**
+         * Finds the end of the combining marks that follow an unmappable character, so that the character and its
+         * marks are reported as one error, which is what normalizing the run as a whole would leave.
+         *
+         * @param transliterator the transliterator
+         * @param src            the input
+         * @param start          the position just past the unmappable character
+         * @param limit          the end of the input
+         * @return the position just past the last combining mark
+         */
+        private static int withMarks(final IntFunction<char[]> transliterator, final char[] src, final int start,
+                                     final int limit) {
+            int end = start;
+            while (end < limit) {
+                final int codepoint = Character.codePointAt(src, end, limit);
+                final char[] transliterated = transliterator.apply(codepoint);
+                if (transliterated.length != 0 || !combines(transliterator, codepoint)) {
+                    break;
+                }
+                end += Character.charCount(codepoint);
             }
-        };
+            return end;
+        }
     }
 }
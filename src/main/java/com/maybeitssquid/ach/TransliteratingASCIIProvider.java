@@ -1,8 +1,13 @@
 package com.maybeitssquid.ach;
 
+import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.spi.CharsetProvider;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -19,76 +24,183 @@ import java.util.List;
  *     <dt>X-ACH-Aggressive</dt>
  *     <dd>Decodes the same characters as {@code X-ACH-Newlines} and encodes the same characters with aggressive
  *     transliteration using {@link Naming}.</dd>
+ *     <dt>X-ACH-Fixed</dt>
+ *     <dd>Decodes the same characters as {@code X-ACH-Filter} and encodes with aggressive transliteration cut down
+ *     by {@link LengthPreserving} to exactly one byte per code point, with a space for any code point that
+ *     would otherwise be dropped. Fixed-width fields keep their width.</dd>
  *     <dt>X-US-ASCII-Transliterating</dt>
  *     <dd>Decodes as plain US-ASCII and encodes with aggressive transliteration using {@link Naming}.</dd>
  * </dl>
+ *
+ * <p>The aggressive charsets share one memo of their transliterations above ASCII, which lives as long as they
+ * do, usually the life of the JVM. The memo is bounded to {@value #DEFAULT_CACHE_ENTRIES} code points, which can be
+ * changed with the {@value #CACHE_ENTRIES_PROPERTY} system property. Setting the {@value #PREFETCH_PROPERTY} system
+ * property to {@code true} turns on {@linkplain Normalizing#prefetchBlocks() block prefetching} for the memo.</p>
+ *
+ * <p>Setting the {@value #PROFILE_PROPERTY} system property to a file name makes the aggressive charsets record the
+ * code points they see in a {@link WorkloadProfile}, which is saved to that file when the JVM shuts down. When the
+ * charsets are next created, the saved profile warms up their memo, so the first files after a restart do not pay
+ * for transliterating each code point on first sight.</p>
  */
 public class TransliteratingASCIIProvider extends CharsetProvider {
 
-    private Charset achFilter;
+    /**
+     * System property holding the approximate number of code points that each aggressive charset memoizes.
+     */
+    public static final String CACHE_ENTRIES_PROPERTY = "com.maybeitssquid.ach.cacheEntries";
 
-    private Charset achNewlines;
+    /**
+     * Default memo bound, which covers every alphabetic script in active use with room to spare.
+     */
+    public static final int DEFAULT_CACHE_ENTRIES = 65536;
 
-    private Charset achAggressive;
+    /**
+     * System property that turns on block prefetching in the aggressive charsets when set to {@code true}.
+     */
+    public static final String PREFETCH_PROPERTY = "com.maybeitssquid.ach.prefetchBlocks";
 
-    private Charset usAsciiAggressive;
+    /**
+     * System property naming the file that holds the workload profile of the aggressive charsets.
+     */
+    public static final String PROFILE_PROPERTY = "com.maybeitssquid.ach.profile";
 
-    private Charset getACHFilter() {
-        if (achFilter == null) {
-            Filtering transliterator = new Filtering().blockControls();
-            achFilter = new TransliteratingASCII("X-ACH", new String[] {"ACH"}, transliterator);
-        }
-        return achFilter;
+    private static int cacheEntries() {
+        return Integer.getInteger(CACHE_ENTRIES_PROPERTY, DEFAULT_CACHE_ENTRIES);
     }
 
-    private Charset getACHNewlines() {
-        if (achNewlines == null) {
-            Filtering transliterator = new Filtering().blockControls()
-                    .encode(0x0A, '\n')
-                    .encode(0x0D, '\r');
-            achNewlines = new TransliteratingASCII("X-ACH-Newlines", new String[0], transliterator);
+    private static Naming naming() {
+        final Naming naming = new Naming(cacheEntries());
+        if (Profile.INSTANCE != null) {
+            naming.warmUp(Profile.INSTANCE);
+            naming.profile(Profile.INSTANCE);
         }
-        return achNewlines;
+        return Boolean.getBoolean(PREFETCH_PROPERTY) ? naming.prefetchBlocks() : naming;
     }
 
-    private Charset getACHAggressive() {
-        if (achAggressive == null) {
-            Filtering transliterator = new Naming().blockControls()
-                    .encode(0x0A, '\n')
-                    .encode(0x0D, '\r');
-            achAggressive = new TransliteratingASCII("X-ACH-Aggressive", new String[0], transliterator);
+    /**
+     * Holds the profile named by {@link #PROFILE_PROPERTY}, or {@code null} if the property is not set. The profile
+     * starts from what the file already holds, so it accumulates over restarts. A file that cannot be read is logged
+     * and replaced, since a profile only ever speeds things up.
+     */
+    private static final class Profile {
+        static final WorkloadProfile INSTANCE = load();
+
+        private static WorkloadProfile load() {
+            final String name = System.getProperty(PROFILE_PROPERTY);
+            if (name == null || name.isEmpty()) {
+                return null;
+            }
+            final Path file = Paths.get(name);
+            WorkloadProfile profile = new WorkloadProfile();
+            if (Files.exists(file)) {
+                try {
+                    profile = WorkloadProfile.load(file);
+                } catch (final IOException e) {
+                    log(System.Logger.Level.WARNING, "Ignoring unreadable workload profile " + file, e);
+                }
+            }
+            final WorkloadProfile saved = profile;
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    saved.save(file);
+                } catch (final IOException e) {
+                    log(System.Logger.Level.WARNING, "Unable to save workload profile " + file, e);
+                }
+            }, "ach-profile-save"));
+            return profile;
         }
-        return this.achAggressive;
-    }
 
-    private Charset getUSASCIIAggressive() {
-        if (usAsciiAggressive == null) {
-            Filtering transliterator = new Naming();
-            usAsciiAggressive = new TransliteratingASCII("X-US-ASCII-Transliterating", new String[0], transliterator);
+        private static void log(final System.Logger.Level level, final String message, final Throwable thrown) {
+            System.getLogger(TransliteratingASCIIProvider.class.getName()).log(level, message, thrown);
         }
-        return usAsciiAggressive;
     }
 
-    private List<Charset> charsets;
+    /*
+     * The JDK keeps only the last two charsets it looked up, and on any other lookup it walks the ServiceLoader again,
+     * which creates a new provider. Each charset is therefore a process-wide singleton, so that a fresh provider hands
+     * back the same instance along with the memo its transliterator has already built up. Each one lives in its own
+     * holder class, which the JVM initializes lazily and exactly once on first use.
+     *
+     * The aggressive charsets differ only in the ASCII range and in whether they keep long transliterations, so they
+     * share one transliterator for everything above it, along with its memo, its workload profile and its prefetching.
+     * Their own tables for the ASCII range never reach the shared results, so the owner keeps the plain ASCII table:
+     * the only control it produces above ASCII is a linefeed for the next-line, line and paragraph separators, which
+     * X-ACH-Aggressive allows and X-ACH-Fixed replaces with a space.
+     */
+
+    private static final class SharedNaming {
+        static final Naming INSTANCE = naming();
+    }
+
+    private static final class ACHFilter {
+        static final Charset INSTANCE = new TransliteratingASCII("X-ACH", new String[] {"ACH"},
+                new Filtering().blockControls());
+    }
+
+    private static final class ACHNewlines {
+        static final Charset INSTANCE = new TransliteratingASCII("X-ACH-Newlines", new String[0],
+                new Filtering().blockControls()
+                        .encode(0x0A, '\n')
+                        .encode(0x0D, '\r'));
+    }
+
+    private static final class ACHAggressive {
+        static final Charset INSTANCE = new TransliteratingASCII("X-ACH-Aggressive", new String[0],
+                new Naming(SharedNaming.INSTANCE).blockControls()
+                        .encode(0x0A, '\n')
+                        .encode(0x0D, '\r'));
+    }
+
+    private static final class ACHFixed {
+        static final Charset INSTANCE = new TransliteratingASCII("X-ACH-Fixed", new String[0],
+                new LengthPreserving(new Naming(SharedNaming.INSTANCE).blockControls(), ' '));
+    }
+
+    private static final class USASCIIAggressive {
+        static final Charset INSTANCE = new TransliteratingASCII("X-US-ASCII-Transliterating", new String[0],
+                new Naming(SharedNaming.INSTANCE));
+    }
+
+    private static final class All {
+        static final List<Charset> INSTANCE = Collections.unmodifiableList(Arrays.asList(
+                ACHFilter.INSTANCE, ACHNewlines.INSTANCE, ACHAggressive.INSTANCE, USASCIIAggressive.INSTANCE,
+                ACHFixed.INSTANCE));
+    }
 
     @Override
     public Iterator<Charset> charsets() {
-        synchronized (this) {
-            if (charsets == null) {
-                charsets = Arrays.asList(getACHFilter(), getACHNewlines(), getACHAggressive(), getUSASCIIAggressive());
-            }
-        }
-        return charsets.iterator();
+        return All.INSTANCE.iterator();
+    }
+
+    /**
+     * Returns the shared charsets in a fixed order.
+     */
+    static List<Charset> shared() {
+        return All.INSTANCE;
     }
 
     @Override
     public Charset charsetForName(String charsetName) {
+        return lookup(charsetName);
+    }
+
+    /**
+     * Retrieves one of this provider's charsets without going through {@link Charset#forName(String)}. When a name is
+     * not among the last two that the JDK looked up, {@code Charset.forName} searches every {@link CharsetProvider} on
+     * the class path, which costs far more than encoding a short field. Code that looks up charsets by name on a hot
+     * path should call this method or keep the returned charset.
+     *
+     * @param charsetName the canonical name or alias of the charset
+     * @return the shared charset instance, or {@code null} if this provider does not supply the named charset
+     */
+    public static Charset lookup(final String charsetName) {
         switch (charsetName) {
             case "ACH":
-            case "X-ACH": return getACHFilter();
-            case "X-ACH-Newlines": return getACHNewlines();
-            case "X-ACH-Aggressive": return getACHAggressive();
-            case "X-US-ASCII-Transliterating": return getUSASCIIAggressive();
+            case "X-ACH": return ACHFilter.INSTANCE;
+            case "X-ACH-Newlines": return ACHNewlines.INSTANCE;
+            case "X-ACH-Aggressive": return ACHAggressive.INSTANCE;
+            case "X-US-ASCII-Transliterating": return USASCIIAggressive.INSTANCE;
+            case "X-ACH-Fixed": return ACHFixed.INSTANCE;
         }
         return null;
     }
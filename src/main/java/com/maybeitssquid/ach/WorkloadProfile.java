@@ -0,0 +1,224 @@
+package com.maybeitssquid.ach;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Record of which code points outside ASCII a transliterator has been asked for, kept so that a later run can
+ * {@linkplain Normalizing#warmUp(WorkloadProfile) warm up} its memo before traffic arrives instead of paying for each
+ * code point on first use. Attach a profile to a transliterator with {@link Normalizing#profile(WorkloadProfile)}.
+ *
+ * <p>The profile is a concurrent bitset with one bit per code point, plus a counter for each block of 256 code points.
+ * Recording a code point that has already been seen is a plain read of its bit and a plain increment of its block
+ * counter, so a profile can stay attached in production. The counters are approximate when several threads record
+ * into the same block at once, but the bits are exact. It is saved as a small binary file that holds only the blocks in
+ * which something was seen.</p>
+ */
+public final class WorkloadProfile {
+
+    static final int MAGIC = 0x41434850;
+
+    static final int BLOCK_SHIFT = 8;
+
+    static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    static final int BLOCKS = (Character.MAX_CODE_POINT + 1) >>> BLOCK_SHIFT;
+
+    static final int WORDS_PER_BLOCK = BLOCK_SIZE / Long.SIZE;
+
+    private final AtomicLongArray seen = new AtomicLongArray((Character.MAX_CODE_POINT + 1) / Long.SIZE);
+
+    /**
+     * Occurrences per block. These are plain increments, like the reference bits in {@link CodePointCache}: a count
+     * that loses the odd update to a race is still a fine measure of how busy a block is, and an atomic increment
+     * would nearly double the cost of a memo hit.
+     */
+    private final long[] counts = new long[BLOCKS];
+
+    /**
+     * Creates an empty profile.
+     */
+    public WorkloadProfile() {
+    }
+
+    /**
+     * Notes one occurrence of a code point. Code points in the ASCII range and values that are not code points are
+     * ignored.
+     *
+     * @param codepoint the code point that was transliterated
+     */
+    public void record(final int codepoint) {
+        if (codepoint < 0x80 || codepoint > Character.MAX_CODE_POINT) {
+            return;
+        }
+        counts[codepoint >>> BLOCK_SHIFT]++;
+        final int word = codepoint >>> 6;
+        final long bit = 1L << codepoint;
+        long bits = seen.getPlain(word);
+        while ((bits & bit) == 0) {
+            final long witness = seen.compareAndExchange(word, bits, bits | bit);
+            if (witness == bits) {
+                return;
+            }
+            bits = witness;
+        }
+    }
+
+    /**
+     * Tells whether a code point has been recorded.
+     *
+     * @param codepoint the code point
+     * @return {@code true} if it has been recorded at least once
+     */
+    public boolean contains(final int codepoint) {
+        return codepoint >= 0x80 && codepoint <= Character.MAX_CODE_POINT
+                && (seen.get(codepoint >>> 6) & 1L << codepoint) != 0;
+    }
+
+    /**
+     * Reports about how often code points in a block have been recorded.
+     *
+     * @param codepoint any code point in the block of 256 to report on
+     * @return the number of occurrences recorded in the block
+     */
+    public long blockCount(final int codepoint) {
+        return codepoint < 0 || codepoint > Character.MAX_CODE_POINT ? 0 : counts[codepoint >>> BLOCK_SHIFT];
+    }
+
+    /**
+     * Counts the distinct code points recorded.
+     *
+     * @return the number of code points whose bit is set
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < seen.length(); i++) {
+            size += Long.bitCount(seen.get(i));
+        }
+        return size;
+    }
+
+    /**
+     * Returns the bits of the code points recorded in a block.
+     *
+     * @param block the block number, which is the code point shifted right by 8
+     * @param bits  destination for the block's four words of bits
+     * @return {@code true} if any bit in the block is set
+     */
+    boolean block(final int block, final long[] bits) {
+        long any = 0;
+        for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+            bits[i] = seen.get(block * WORDS_PER_BLOCK + i);
+            any |= bits[i];
+        }
+        return any != 0;
+    }
+
+    /**
+     * Adds another profile to this one.
+     *
+     * @param other the profile to add
+     * @return this profile
+     */
+    public WorkloadProfile merge(final WorkloadProfile other) {
+        for (int i = 0; i < seen.length(); i++) {
+            final long bits = other.seen.get(i);
+            if (bits != 0) {
+                seen.getAndAccumulate(i, bits, (a, b) -> a | b);
+            }
+        }
+        for (int i = 0; i < BLOCKS; i++) {
+            counts[i] += other.counts[i];
+        }
+        return this;
+    }
+
+    /**
+     * Writes the profile. Each block that holds a recorded code point takes 44 bytes.
+     *
+     * @param out the stream to write to, which is left open
+     * @throws IOException if the stream cannot be written
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        final long[] bits = new long[WORDS_PER_BLOCK];
+        data.writeInt(MAGIC);
+        for (int block = 0; block < BLOCKS; block++) {
+            if (block(block, bits)) {
+                data.writeInt(block);
+                data.writeLong(counts[block]);
+                for (final long word : bits) {
+                    data.writeLong(word);
+                }
+            }
+        }
+        data.writeInt(-1);
+        data.flush();
+    }
+
+    /**
+     * Reads a profile written by {@link #writeTo(OutputStream)}.
+     *
+     * @param in the stream to read from, which is left open
+     * @return the profile
+     * @throws IOException if the stream cannot be read or does not hold a profile
+     */
+    public static WorkloadProfile readFrom(final InputStream in) throws IOException {
+        final DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a workload profile");
+        }
+        final WorkloadProfile profile = new WorkloadProfile();
+        for (int block = data.readInt(); block != -1; block = data.readInt()) {
+            if (block < 0 || block >= BLOCKS) {
+                throw new IOException("Corrupt workload profile, block " + block);
+            }
+            profile.counts[block] = data.readLong();
+            for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+                profile.seen.set(block * WORDS_PER_BLOCK + i, data.readLong());
+            }
+        }
+        return profile;
+    }
+
+    /**
+     * Saves the profile to a file, replacing it in one step so that a crash never leaves half a profile behind.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void save(final Path file) throws IOException {
+        final Path absolute = file.toAbsolutePath();
+        final Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                writeTo(out);
+            }
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Loads a profile saved by {@link #save(Path)}.
+     *
+     * @param file the file to read
+     * @return the profile
+     * @throws IOException if the file cannot be read or does not hold a profile
+     */
+    public static WorkloadProfile load(final Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return readFrom(in);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.maybeitssquid.ach;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+/**
+ * Supplies the classes of the encoders and decoders that {@link TransliteratingASCII} creates. This is the Java 17
+ * implementation from the multi-release JAR. It defines a hidden copy of the coder class for each charset, with the
+ * charset's transliterators bound to it as class data. The JIT then profiles each copy separately, so a call to the
+ * transliterator sees a single receiver however many charsets are in use, and it reads the transliterators from
+ * static final fields, which it treats as constants. If the class file cannot be read, it falls back to sharing the
+ * coder class like the portable version.
+ */
+final class CoderClasses {
+
+    private CoderClasses() {
+    }
+
+    /**
+     * Finds the constructor of the coder class to use for a charset.
+     *
+     * @param lookup   a lookup on the charset class, with private access to {@code template}
+     * @param template the coder class, whose constructor takes the charset as its only argument
+     * @param bound    the values that the coder class reads through {@link #bound(MethodHandles.Lookup, int)}, or
+     *                 {@code null} to use {@code template} itself
+     * @return the constructor
+     */
+    static MethodHandle constructor(final MethodHandles.Lookup lookup, final Class<?> template,
+                                    final List<?> bound) {
+        final MethodType type = MethodType.methodType(void.class, lookup.lookupClass());
+        try {
+            final byte[] bytes = bound == null ? null : classFile(template);
+            if (bytes != null) {
+                final MethodHandles.Lookup hidden = lookup.defineHiddenClassWithClassData(bytes, bound, true,
+                        MethodHandles.Lookup.ClassOption.NESTMATE);
+                return hidden.findConstructor(hidden.lookupClass(), type);
+            }
+            return lookup.findConstructor(template, type);
+        } catch (final ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] classFile(final Class<?> template) {
+        final String name = template.getName();
+        try (InputStream in = template.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class")) {
+            return in == null ? null : in.readAllBytes();
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets a value bound to a coder class by {@link #constructor(MethodHandles.Lookup, Class, List)}.
+     *
+     * @param lookup the coder class's own lookup
+     * @param index  the position of the value in the list that was bound
+     * @param <T>    the type of the value
+     * @return the value, or {@code null} in the shared class that the copies are made from
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T bound(final MethodHandles.Lookup lookup, final int index) {
+        if (!lookup.lookupClass().isHidden()) {
+            return null;
+        }
+        try {
+            return (T) MethodHandles.classDataAt(lookup, "_", Object.class, index);
+        } catch (final IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
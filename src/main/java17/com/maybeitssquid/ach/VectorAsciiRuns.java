@@ -0,0 +1,57 @@
+package com.maybeitssquid.ach;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API kernel behind {@link AsciiRuns}. Each step loads as many characters as the preferred vector shape holds,
+ * 16 with AVX2 or 32 with AVX-512, tests them all against the range at once, and narrows them to bytes with a single
+ * lane conversion. Characters are loaded as signed shorts, so anything from {@code 0x8000} up is negative and fails
+ * the lower bound.
+ */
+final class VectorAsciiRuns {
+
+    private static final VectorSpecies<Short> CHARS = ShortVector.SPECIES_PREFERRED;
+
+    private static final VectorSpecies<Byte> BYTES =
+            VectorSpecies.of(byte.class, VectorShape.forBitSize(CHARS.vectorBitSize() / 2));
+
+    private VectorAsciiRuns() {
+    }
+
+    /**
+     * Tests whether the platform vectors are wide enough to beat the scalar loop.
+     */
+    static boolean isUseful() {
+        return CHARS.length() >= 8;
+    }
+
+    /**
+     * Narrows whole vectors of in-range characters, stopping at the first vector that holds a character out of range
+     * or that would run past {@code length}.
+     *
+     * @return the number of characters copied, always a multiple of the vector length
+     */
+    static int narrow(final char[] src, final int sp, final byte[] dst, final int dp, final int length,
+                      final int low, final int high) {
+        final int lanes = CHARS.length();
+        final short lo = (short) low;
+        final short hi = (short) high;
+        int i = 0;
+        while (i + lanes <= length) {
+            final ShortVector chars = ShortVector.fromCharArray(CHARS, src, sp + i);
+            final VectorMask<Short> outside = chars.compare(VectorOperators.LT, lo)
+                    .or(chars.compare(VectorOperators.GT, hi));
+            if (outside.anyTrue()) {
+                break;
+            }
+            ((ByteVector) chars.convertShape(VectorOperators.S2B, BYTES, 0)).intoArray(dst, dp + i);
+            i += lanes;
+        }
+        return i;
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.*;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -244,6 +245,73 @@ abstract public class AbstractCharsetTests {
         assertEquals('A', output.get());
     }
 
+    @Test
+    public void testDecodeWordBoundaries() {
+        final byte[] samples = {A, LF, CR, 0x00, 0x1F, 0x20, 0x7E, 0x7F, -128, -1};
+        for (final byte sample : samples) {
+            for (int at = 0; at < 24; at++) {
+                final byte[] input = new byte[24];
+                Arrays.fill(input, B);
+                input[at] = sample;
+
+                final StringBuilder expected = new StringBuilder();
+                for (final byte b : input) {
+                    expected.append(charset.decode(ByteBuffer.wrap(new byte[]{b})));
+                }
+                assertEquals(expected.toString(), charset.decode(ByteBuffer.wrap(input)).toString(),
+                        String.format("Decoding %02X at offset %d", sample, at));
+            }
+        }
+    }
+
+    @Test
+    public void testDirectBuffers() {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            text.append((char) ('A' + i % 26));
+        }
+
+        // CharBuffer.wrap(CharSequence) is read-only, so it has no accessible array either
+        final CharsetEncoder encoder = charset.newEncoder();
+        final ByteBuffer encoded = ByteBuffer.allocateDirect(text.length());
+        assertTrue(encoder.encode(CharBuffer.wrap(text), encoded, true).isUnderflow());
+        assertEquals(text.length(), encoded.position());
+        encoded.flip();
+
+        final CharsetDecoder decoder = charset.newDecoder();
+        final CharBuffer decoded = ByteBuffer.allocateDirect(text.length() * 2).asCharBuffer();
+        assertTrue(decoder.decode(encoded, decoded, true).isUnderflow());
+        decoded.flip();
+        assertEquals(text.toString(), decoded.toString());
+    }
+
+    @Test
+    public void testDirectBufferOverflow() {
+        final ByteBuffer in = ByteBuffer.allocateDirect(2000);
+        while (in.hasRemaining()) {
+            in.put(A);
+        }
+        in.flip();
+        final CharBuffer out = ByteBuffer.allocateDirect(2 * 1500).asCharBuffer();
+
+        final CoderResult result = charset.newDecoder().decode(in, out, false);
+        assertTrue(result.isOverflow());
+        assertEquals(1500, in.position());
+        assertEquals(1500, out.position());
+    }
+
+    @Test
+    public void testEncoderSplitSurrogatePair() {
+        final CharsetEncoder encoder = charset.newEncoder();
+        chars.put("A\uD83D");
+        chars.flip();
+
+        final CoderResult result = encoder.encode(chars, bytes, false);
+        assertTrue(result.isUnderflow());
+        assertEquals(1, chars.position(), "Should wait for the low surrogate");
+        assertEquals(1, bytes.position());
+    }
+
     /**
      * Test the encoder directly.
      */
@@ -5,8 +5,13 @@ import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnmappableCharacterException;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -34,4 +39,61 @@ public class TestACHAggressiveCharset extends AbstractCharsetTests {
     public void testCannotEncode() {
         testEncoderCannotEncode(new char[] {'\u0000', '\u007F', '\u0080', '\u0081', '\u0800', '\uFFFF'});
     }
+
+    private String encodeReplacing(final CharsetEncoder encoder, final String... pieces) {
+        encoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final ByteBuffer out = ByteBuffer.allocate(64);
+        for (int i = 0; i < pieces.length; i++) {
+            final CharBuffer in = CharBuffer.wrap(pieces[i]);
+            while (true) {
+                final CoderResult result = encoder.encode(in, out, i == pieces.length - 1);
+                if (result.isUnmappable()) {
+                    out.put(encoder.replacement());
+                    in.position(in.position() + result.length());
+                } else {
+                    break;
+                }
+            }
+        }
+        encoder.flush(out);
+        return new String(out.array(), 0, out.position(), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void testCombiningMarks() {
+        // Decomposed input drops its marks, like the precomposed form does
+        assertEquals("Nguyen Thi Ngoc Anh",
+                encodeReplacing(charset.newEncoder(), "Nguye\u0302\u0303n Thi\u0323 Ngo\u0323c A\u0301nh"));
+        assertEquals("Nguyen Thi Ngoc Anh",
+                encodeReplacing(charset.newEncoder(), "Nguy\u1EC5n Th\u1ECB Ng\u1ECDc \u00C1nh"));
+        // A base and its marks are one error
+        assertEquals("?a", encodeReplacing(charset.newEncoder(), "\u05D0\u05B8\u05BCa"));
+        // A mark with nothing before it is an error of its own
+        assertEquals("?e", encodeReplacing(charset.newEncoder(), "\u0301e"));
+    }
+
+    @Test
+    public void testCombiningMarksAfterNonLetters() throws CharacterCodingException {
+        // Only a letter takes a mark, so a mark after a space or punctuation is reported rather than dropped
+        for (final String text : new String[] {" \u0301", "$\u0301", "Jos\u00E9 \u0301", "\u2018\u0301"}) {
+            final CharsetEncoder encoder = charset.newEncoder().onUnmappableCharacter(CodingErrorAction.REPORT);
+            assertThrows(UnmappableCharacterException.class, () -> encoder.encode(CharBuffer.wrap(text)));
+        }
+        final CharsetEncoder encoder = charset.newEncoder().onUnmappableCharacter(CodingErrorAction.REPORT);
+        assertEquals(ByteBuffer.wrap(new byte[] {'e'}), encoder.encode(CharBuffer.wrap("e\u0301")));
+        assertEquals(" ?", encodeReplacing(charset.newEncoder(), " \u0301"));
+        assertEquals("$?", encodeReplacing(charset.newEncoder(), "$", "\u0301"));
+    }
+
+    @Test
+    public void testCombiningMarksAcrossBuffers() {
+        assertEquals("Jose", encodeReplacing(charset.newEncoder(), "Jose", "\u0301"));
+        assertEquals("Jose", encodeReplacing(charset.newEncoder(), "Jos\u00E9", "\u0301\u0302"));
+        assertEquals("?a", encodeReplacing(charset.newEncoder(), "\u05D0\u05B8", "\u05BCa"));
+        // Reset forgets the base
+        final CharsetEncoder encoder = charset.newEncoder();
+        encodeReplacing(encoder, "e");
+        encoder.reset();
+        assertEquals("?", encodeReplacing(encoder, "\u0301"));
+    }
 }
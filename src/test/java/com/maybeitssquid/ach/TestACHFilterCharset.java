@@ -67,4 +67,11 @@ public class TestACHFilterCharset extends AbstractCharsetTests {
         assertEquals(REPLACEMENT, simple.get(), "Accepted out of range (0xFF)");
         assertEquals(A, simple.get());
     }
+
+    @Test
+    public void testCombiningMarkIsUnmappable() {
+        final ByteBuffer encoded = charset.encode("Jose\u0301");
+        assertEquals(5, encoded.remaining());
+        assertEquals((byte) '?', encoded.get(4), "Accepted combining mark");
+    }
 }
@@ -0,0 +1,102 @@
+package com.maybeitssquid.ach;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestAchCoders {
+
+    private static final String[] NAMES = {"X-ACH", "X-ACH-Newlines", "X-ACH-Aggressive", "X-US-ASCII-Transliterating",
+            "X-ACH-Fixed"};
+
+    @Test
+    public void testSameThreadReuses() {
+        for (final String name : NAMES) {
+            final Charset charset = Charset.forName(name);
+            final CharsetEncoder encoder = AchCoders.encoder(charset);
+            assertSame(charset, encoder.charset());
+            assertSame(encoder, AchCoders.encoder(name));
+            final CharsetDecoder decoder = AchCoders.decoder(charset);
+            assertSame(charset, decoder.charset());
+            assertSame(decoder, AchCoders.decoder(name));
+        }
+        assertSame(AchCoders.encoder("X-ACH"), AchCoders.encoder("ACH"));
+    }
+
+    @Test
+    public void testThreadsDoNotShare() throws Exception {
+        final CharsetEncoder mine = AchCoders.encoder("X-ACH");
+        final ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            final CharsetEncoder theirs = pool.submit(() -> AchCoders.encoder("X-ACH")).get(10, TimeUnit.SECONDS);
+            assertNotSame(mine, theirs);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRestoresDefaults() throws Exception {
+        final CharsetEncoder encoder = AchCoders.encoder("X-ACH");
+        encoder.onUnmappableCharacter(CodingErrorAction.REPLACE).replaceWith(new byte[]{'_'});
+        // Leave the encoder part way through an operation
+        encoder.encode(CharBuffer.wrap("abc"), ByteBuffer.allocate(8), false);
+
+        final CharsetEncoder again = AchCoders.encoder("X-ACH");
+        assertSame(encoder, again);
+        assertEquals(CodingErrorAction.REPORT, again.unmappableCharacterAction());
+        assertEquals(CodingErrorAction.REPORT, again.malformedInputAction());
+        assertArrayEquals(new byte[]{'?'}, again.replacement());
+        assertThrows(UnmappableCharacterException.class, () -> again.encode(CharBuffer.wrap("é")));
+
+        final CharsetDecoder decoder = AchCoders.decoder("X-ACH");
+        decoder.onMalformedInput(CodingErrorAction.IGNORE).replaceWith("!");
+        final CharsetDecoder decoderAgain = AchCoders.decoder("X-ACH");
+        assertEquals(CodingErrorAction.REPORT, decoderAgain.malformedInputAction());
+        assertEquals("�", decoderAgain.replacement());
+        assertEquals("ACH", decoderAgain.decode(ByteBuffer.wrap(new byte[]{'A', 'C', 'H'})).toString());
+    }
+
+    @Test
+    public void testBorrowDoesNotAllocate() {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        final com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        if (!allocations.isThreadAllocatedMemorySupported() || !allocations.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+        final long thread = Thread.currentThread().getId();
+        final Charset charset = Charset.forName("X-ACH");
+        final int borrows = 10_000;
+        // Create the coders and warm up the borrowing path before measuring
+        for (int i = 0; i < borrows; i++) {
+            AchCoders.encoder(charset);
+            AchCoders.decoder(charset);
+        }
+        final long before = allocations.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < borrows; i++) {
+            AchCoders.encoder(charset);
+            AchCoders.decoder(charset);
+        }
+        final long bytes = allocations.getThreadAllocatedBytes(thread) - before;
+        assertTrue(bytes < borrows, String.format("%.1f bytes per borrow", (double) bytes / borrows));
+    }
+
+    @Test
+    public void testRejectsOtherCharsets() {
+        assertThrows(IllegalArgumentException.class, () -> AchCoders.encoder(StandardCharsets.US_ASCII));
+        assertThrows(IllegalArgumentException.class, () -> AchCoders.decoder(StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> AchCoders.encoder("US-ASCII"));
+    }
+}
@@ -0,0 +1,158 @@
+package com.maybeitssquid.ach;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestAchFileValidator {
+
+    private static final Charset ACH = TransliteratingASCIIProvider.lookup("X-ACH");
+
+    private static final byte[] RECORD = ("101 091000019 1234567891701011200A094101WELLS FARGO            ACME CORP"
+            + "                      ").getBytes(ACH);
+
+    /**
+     * Checks a file one byte at a time, as the validator would with a single chunk and no word checks.
+     */
+    private static List<AchFileValidator.Violation> reference(final byte[] file, final boolean[] allowed) {
+        final List<AchFileValidator.Violation> violations = new ArrayList<>();
+        long record = 1;
+        int position = 0;
+        for (int i = 0; i < file.length; i++) {
+            final byte b = file[i];
+            if (b == '\n' || b == '\r' && i + 1 < file.length && file[i + 1] == '\n') {
+                record += position == 0 ? 1 : (position + AchFileValidator.RECORD_LENGTH - 1)
+                        / AchFileValidator.RECORD_LENGTH;
+                position = 0;
+                if (b == '\r') {
+                    i++;
+                }
+            } else {
+                if (!allowed[b & 0xFF]) {
+                    violations.add(new AchFileValidator.Violation(i, record + position / AchFileValidator.RECORD_LENGTH,
+                            position % AchFileValidator.RECORD_LENGTH + 1, b & 0xFF));
+                }
+                position++;
+            }
+        }
+        return violations;
+    }
+
+    private static boolean[] allowed() {
+        final boolean[] allowed = new boolean[256];
+        for (int b = 0x20; b < 0x7F; b++) {
+            allowed[b] = true;
+        }
+        return allowed;
+    }
+
+    private static List<AchFileValidator.Violation> validate(final AchFileValidator validator, final byte[] file)
+            throws IOException {
+        final Path path = Files.createTempFile("ach", ".txt");
+        try {
+            Files.write(path, file);
+            return validator.validate(path);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testCleanFile() throws IOException {
+        final byte[] file = new byte[(RECORD.length + 1) * 10];
+        for (int r = 0; r < 10; r++) {
+            System.arraycopy(RECORD, 0, file, r * (RECORD.length + 1), RECORD.length);
+            file[r * (RECORD.length + 1) + RECORD.length] = '\n';
+        }
+        assertTrue(validate(new AchFileValidator(), file).isEmpty());
+    }
+
+    @Test
+    public void testRecordAndColumn() throws IOException {
+        final byte[] file = new byte[(RECORD.length + 2) * 3];
+        for (int r = 0; r < 3; r++) {
+            System.arraycopy(RECORD, 0, file, r * (RECORD.length + 2), RECORD.length);
+            file[r * (RECORD.length + 2) + RECORD.length] = '\r';
+            file[r * (RECORD.length + 2) + RECORD.length + 1] = '\n';
+        }
+        final int offset = (RECORD.length + 2) * 2 + 9;
+        file[offset] = (byte) 0xE9;
+        assertEquals(Arrays.asList(new AchFileValidator.Violation(offset, 3, 10, 0xE9)),
+                validate(new AchFileValidator(), file));
+    }
+
+    @Test
+    public void testWithoutTerminators() throws IOException {
+        final byte[] file = new byte[RECORD.length * 4];
+        for (int r = 0; r < 4; r++) {
+            System.arraycopy(RECORD, 0, file, r * RECORD.length, RECORD.length);
+        }
+        file[RECORD.length * 3 + 93] = '\r';
+        assertEquals(Arrays.asList(new AchFileValidator.Violation(RECORD.length * 3 + 93, 4, 94, '\r')),
+                validate(new AchFileValidator(), file));
+    }
+
+    @Test
+    public void testLimit() throws IOException {
+        final byte[] file = new byte[1000];
+        Arrays.fill(file, (byte) 0x7F);
+        final Path path = Files.createTempFile("ach", ".txt");
+        try {
+            Files.write(path, file);
+            final List<AchFileValidator.Violation> violations = new AchFileValidator(ACH, ForkJoinPool.commonPool(),
+                    64).validate(path, 100);
+            assertEquals(100, violations.size());
+            assertEquals(99, violations.get(99).offset());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testFollowsCharsetTable() throws IOException {
+        final Filtering filtering = new Filtering().blockControls();
+        final Charset charset = new TransliteratingASCII("X-Test-Validator", new String[0], filtering);
+        final AchFileValidator validator = new AchFileValidator(charset);
+        assertTrue(validate(validator, RECORD).isEmpty());
+        filtering.block('W');
+        assertEquals(Arrays.asList(new AchFileValidator.Violation(40, 1, 41, 'W')), validate(validator, RECORD));
+
+        assertThrows(IllegalArgumentException.class, () -> new AchFileValidator(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        assertTrue(validate(new AchFileValidator(), new byte[0]).isEmpty());
+    }
+
+    @Test
+    public void testChunksMatchReference() throws IOException {
+        final Random random = new Random(94);
+        final boolean[] allowed = allowed();
+        final byte[] alphabet = {'A', '0', ' ', '*', '\n', '\n', '\r', '\r', 0x00, 0x7F, (byte) 0xE9, (byte) 0xFF};
+        for (int trial = 0; trial < 200; trial++) {
+            final byte[] file = new byte[random.nextInt(2000)];
+            for (int i = 0; i < file.length; i++) {
+                // Mostly clean text, so that the word checks and long lines both get exercised
+                file[i] = random.nextInt(20) == 0 ? alphabet[random.nextInt(alphabet.length)]
+                        : RECORD[random.nextInt(RECORD.length)];
+            }
+            final List<AchFileValidator.Violation> expected = reference(file, allowed);
+            for (final int chunk : new int[]{1, 2, 7, 64, 95, 1 << 20}) {
+                assertEquals(expected, validate(new AchFileValidator(ACH, ForkJoinPool.commonPool(), chunk), file),
+                        "trial " + trial + ", chunk " + chunk);
+            }
+        }
+    }
+}
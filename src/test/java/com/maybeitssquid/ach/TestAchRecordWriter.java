@@ -0,0 +1,113 @@
+package com.maybeitssquid.ach;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestAchRecordWriter {
+
+    private static final Charset ACH = TransliteratingASCIIProvider.lookup("X-ACH");
+
+    private static final String NINES = "9".repeat(AchRecordWriter.RECORD_LENGTH);
+
+    private static String pad(final String record) {
+        return record + " ".repeat(AchRecordWriter.RECORD_LENGTH - record.length());
+    }
+
+    @Test
+    public void testFieldsPadAndTruncate() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (AchRecordWriter writer = new AchRecordWriter(Channels.newChannel(bytes))) {
+            writer.field("1").field("01", 2).field(" 091000019", 10).field("TOO LONG FOR ITS FIELD", 8).endRecord();
+        }
+        final String[] records = bytes.toString(StandardCharsets.US_ASCII).split("\n");
+        assertEquals(AchRecordWriter.BLOCKING_FACTOR, records.length);
+        assertEquals(pad("101 091000019TOO LONG"), records[0]);
+        for (int i = 1; i < records.length; i++) {
+            assertEquals(NINES, records[i]);
+        }
+    }
+
+    @Test
+    public void testTransliterationKeepsFieldWidths() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (AchRecordWriter writer = new AchRecordWriter(Channels.newChannel(bytes),
+                TransliteratingASCIIProvider.lookup("X-ACH-Aggressive"), AchRecordWriter.Terminator.NONE)) {
+            // Aggressive transliteration turns each of the two characters into more than one byte
+            writer.field("Æsir ½", 6).field("|").field("Café\nBar", 8).field("|").endRecord();
+        }
+        final String file = bytes.toString(StandardCharsets.US_ASCII);
+        assertEquals(AchRecordWriter.RECORD_LENGTH * AchRecordWriter.BLOCKING_FACTOR, file.length());
+        assertEquals(pad("AEsir |Cafe\nBar|"), file.substring(0, AchRecordWriter.RECORD_LENGTH));
+    }
+
+    @Test
+    public void testControlsAreReplaced() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (AchRecordWriter writer = new AchRecordWriter(Channels.newChannel(bytes))) {
+            writer.record("A\nB\ré");
+        }
+        assertEquals(pad("A?B??"), bytes.toString(StandardCharsets.US_ASCII).split("\n")[0]);
+    }
+
+    @Test
+    public void testBlocking() throws IOException {
+        for (int count = 0; count <= 25; count++) {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            // A batch smaller than a block, so that filling the block crosses a batch
+            try (AchRecordWriter writer = new AchRecordWriter(Channels.newChannel(bytes), ACH,
+                    AchRecordWriter.Terminator.CRLF, 300)) {
+                for (int r = 0; r < count; r++) {
+                    writer.record("RECORD " + r);
+                }
+                assertEquals(count, writer.records());
+            }
+            final String file = bytes.toString(StandardCharsets.US_ASCII);
+            final int expected = (count + AchRecordWriter.BLOCKING_FACTOR - 1) / AchRecordWriter.BLOCKING_FACTOR
+                    * AchRecordWriter.BLOCKING_FACTOR;
+            assertEquals(expected * (AchRecordWriter.RECORD_LENGTH + 2), file.length());
+            final String[] records = file.isEmpty() ? new String[0] : file.split("\r\n");
+            for (int r = 0; r < expected; r++) {
+                assertEquals(r < count ? pad("RECORD " + r) : NINES, records[r]);
+            }
+        }
+    }
+
+    @Test
+    public void testLongAndSurrogateFields() throws IOException {
+        final StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append((char) ('A' + i % 26));
+        }
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (AchRecordWriter writer = new AchRecordWriter(Channels.newChannel(bytes), ACH,
+                AchRecordWriter.Terminator.LF)) {
+            writer.record(text);
+            // A supplementary character split across two stagings of the field
+            writer.record(new StringBuilder("x".repeat(AchRecordWriter.RECORD_LENGTH - 1)).append("😀"));
+        }
+        final String[] records = bytes.toString(StandardCharsets.US_ASCII).split("\n");
+        assertEquals(text.substring(0, AchRecordWriter.RECORD_LENGTH), records[0]);
+        assertEquals("x".repeat(AchRecordWriter.RECORD_LENGTH - 1) + "?", records[1]);
+    }
+
+    @Test
+    public void testCloseEndsRecordAndRejectsWrites() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final AchRecordWriter writer = new AchRecordWriter(Channels.newChannel(bytes));
+        writer.field("UNFINISHED");
+        writer.close();
+        writer.close();
+        assertEquals(pad("UNFINISHED"), bytes.toString(StandardCharsets.US_ASCII).split("\n")[0]);
+        assertEquals(1, writer.records());
+        assertThrows(IllegalStateException.class, () -> writer.field("MORE"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AchRecordWriter(Channels.newChannel(bytes)).field("X", -1));
+    }
+}
@@ -0,0 +1,66 @@
+package com.maybeitssquid.ach;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestAsciiRuns {
+
+    private static final int LENGTH = 100;
+
+    private static char[] run() {
+        final char[] chars = new char[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            chars[i] = (char) (0x20 + i % 0x5F);
+        }
+        return chars;
+    }
+
+    @Test
+    public void testWholeRun() {
+        final char[] chars = run();
+        final byte[] bytes = new byte[LENGTH + 2];
+        assertEquals(LENGTH, AsciiRuns.narrow(chars, 0, bytes, 2, LENGTH, 0x20, 0x7E));
+        for (int i = 0; i < LENGTH; i++) {
+            assertEquals(chars[i], bytes[i + 2]);
+        }
+    }
+
+    @Test
+    public void testStopsAtFirstOutOfRange() {
+        final char[] outside = {0x00, 0x1F, 0x7F, 0x80, 0xE9, 0x8000, 0xFFFF};
+        for (final char c : outside) {
+            for (int at = 0; at < LENGTH; at++) {
+                final char[] chars = run();
+                chars[at] = c;
+                final byte[] bytes = new byte[LENGTH];
+                final int copied = AsciiRuns.narrow(chars, 0, bytes, 0, LENGTH, 0x20, 0x7E);
+                assertEquals(at, copied, String.format("%04X at %d", (int) c, at));
+                for (int i = 0; i < at; i++) {
+                    assertEquals(chars[i], bytes[i]);
+                }
+                assertEquals(0, bytes[at]);
+            }
+        }
+    }
+
+    @Test
+    public void testRespectsLength() {
+        final char[] chars = run();
+        for (int length = 0; length < LENGTH; length++) {
+            final byte[] bytes = new byte[LENGTH];
+            assertEquals(length, AsciiRuns.narrow(chars, 1, bytes, 0, length, 0x20, 0x7E));
+            final byte[] untouched = new byte[LENGTH - length];
+            assertArrayEquals(untouched, Arrays.copyOfRange(bytes, length, LENGTH));
+        }
+    }
+
+    @Test
+    public void testEmptyRange() {
+        final byte[] bytes = new byte[LENGTH];
+        assertEquals(0, AsciiRuns.narrow(run(), 0, bytes, 0, LENGTH, 0x7F, 0x00));
+    }
+}
@@ -0,0 +1,60 @@
+package com.maybeitssquid.ach;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.Normalizer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestDecompositionTable {
+
+    private static String reference(final int codepoint, final Normalizer.Form form) {
+        return Normalizer.normalize(Character.toString(codepoint), form);
+    }
+
+    private static String table(final int codepoint, final Normalizer.Form form) {
+        final DecompositionTable table = DecompositionTable.get(form);
+        final int entry = table.find(codepoint);
+        if (entry >= 0) {
+            return new String(table.pool(), table.start(entry), table.end(entry) - table.start(entry));
+        } else if (table.decomposes() && DecompositionTable.isHangulSyllable(codepoint)) {
+            final StringBuilder jamo = new StringBuilder();
+            for (int i = 0; i < 3; i++) {
+                final int c = DecompositionTable.hangul(codepoint, i);
+                if (c >= 0) {
+                    jamo.appendCodePoint(c);
+                }
+            }
+            return jamo.toString();
+        } else {
+            return Character.toString(codepoint);
+        }
+    }
+
+    @Test
+    public void testMatchesNormalizer() {
+        for (final Normalizer.Form form : Normalizer.Form.values()) {
+            for (int cp = 0x0080; cp <= Character.MAX_CODE_POINT; cp++) {
+                if (cp >= 0x30000 && cp < 0xE0000) {
+                    // Unassigned planes
+                    cp = 0xE0000;
+                }
+                assertEquals(reference(cp, form), table(cp, form), String.format("%s of %04X", form, cp));
+            }
+        }
+    }
+
+    @Test
+    public void testNormalizingUsesTable() {
+        for (final Normalizer.Form form : Normalizer.Form.values()) {
+            final Normalizing normalizing = new Normalizing(form);
+            final StringBuilder expected = new StringBuilder();
+            for (int cp = 0x0080; cp < 0x10000; cp++) {
+                expected.setLength(0);
+                reference(cp, form).codePoints().forEach(c -> expected.append(normalizing.dispatch(c)));
+                assertEquals(expected.toString(), new String(normalizing.apply(cp)),
+                        String.format("%s of %04X", form, cp));
+            }
+        }
+    }
+}
@@ -20,6 +20,78 @@ public class TestFiltering extends AbstractEncoderTests {
         assertThrows(IllegalArgumentException.class, super::blockHigh);
     }
 
+    @Test
+    public void testCopyOnWrite() {
+        final char[][] before = encoder.ascii();
+        final char[] a = before['A'];
+        final int identity = encoder.identityRange();
+
+        encoder.encode('A', 'B');
+        assertNotSame(before, encoder.ascii());
+        assertSame(a, before['A'], "Published table was changed");
+        assertArrayEquals(new char[]{'B'}, encoder.apply('A'));
+        assertNotEquals(identity, encoder.identityRange());
+
+        encoder.encode('A', 'A');
+        assertEquals(identity, encoder.identityRange());
+    }
+
+    @Test
+    public void testTransliterate() {
+        final byte[] dst = new byte[8];
+        for (int codepoint = 0; codepoint < 0x3000; codepoint++) {
+            final char[] expected = encoder.apply(codepoint);
+            final boolean ascii = expected.length > 0 && new String(expected).chars().allMatch(c -> c < 0x80);
+            final int written = encoder.transliterate(codepoint, dst, 1, dst.length);
+            if (!ascii) {
+                assertEquals(ByteTransliterator.UNMAPPABLE, written, String.format("Transliterated %04X", codepoint));
+                continue;
+            }
+            assertEquals(expected.length, written);
+            for (int i = 0; i < written; i++) {
+                assertEquals(expected[i], dst[1 + i]);
+            }
+            if (written > 1) {
+                assertEquals(~written, encoder.transliterate(codepoint, dst, 1, written));
+            }
+            assertEquals(~written, encoder.transliterate(codepoint, dst, 1, 1));
+        }
+    }
+
+    @Test
+    public void testEncodeCopiesArray() {
+        final char[] as = {'x', 'y'};
+        encoder.encode('A', as);
+        as[0] = 'z';
+        assertArrayEquals(new char[]{'x', 'y'}, encoder.apply('A'));
+    }
+
+    @Test
+    public void testCompile() {
+        encoder.encode(0x0021, "!!");
+        final CompiledTransliterator compiled = encoder.compile();
+        assertEquals(encoder.identityRange(), compiled.identityRange());
+        // Lookups return the snapshot's own arrays rather than copies
+        assertSame(compiled.apply(0x0021), compiled.apply(0x0021));
+        final byte[] copied = new byte[16];
+        for (int codepoint = 0; codepoint < 0x3000; codepoint++) {
+            final String expected = new String(encoder.apply(codepoint));
+            final String ascii = expected.chars().allMatch(c -> c < 0x80) ? expected : "";
+            assertEquals(ascii, new String(compiled.apply(codepoint)), String.format("Compiled %04X", codepoint));
+            assertEquals(ascii.length(), compiled.length(codepoint));
+            assertEquals(ascii.length(), compiled.copy(codepoint, copied, 1));
+            assertEquals(ascii, new String(copied, 1, ascii.length(), java.nio.charset.StandardCharsets.US_ASCII));
+            assertEquals(ascii.isEmpty() ? ByteTransliterator.UNMAPPABLE : ascii.length(),
+                    compiled.transliterate(codepoint, copied, 2, copied.length));
+            assertEquals(ascii, new String(copied, 2, ascii.length(), java.nio.charset.StandardCharsets.US_ASCII));
+        }
+        assertEquals(0, compiled.length(Character.MAX_CODE_POINT + 1));
+        assertEquals(~2, compiled.transliterate(0x0021, copied, 0, 1), "Wrote past the limit");
+
+        encoder.block(0x0021);
+        assertEquals("!!", new String(compiled.apply(0x0021)), "Snapshot changed after compiling");
+    }
+
     @Test
     public void testSpaceSeparator() {
         final String spaces = " \u0020";
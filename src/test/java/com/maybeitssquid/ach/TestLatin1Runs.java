@@ -0,0 +1,91 @@
+package com.maybeitssquid.ach;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TestLatin1Runs {
+
+    private static final int LENGTH = 600;
+
+    private static final int OFFSET = 3;
+
+    private static char[] run() {
+        final char[] chars = new char[OFFSET + LENGTH];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) (0x20 + i % 0x5F);
+        }
+        return chars;
+    }
+
+    @Test
+    public void testNarrowWholeRun() {
+        final char[] chars = run();
+        final CharBuffer in = CharBuffer.wrap(chars);
+        final ByteBuffer out = ByteBuffer.allocate(LENGTH + OFFSET);
+        assertEquals(LENGTH, new Latin1Runs().narrow(in, OFFSET, out, OFFSET, LENGTH, 0x20, 0x7E));
+        assertEquals(chars.length, in.limit());
+        for (int i = OFFSET; i < chars.length; i++) {
+            assertEquals(chars[i], out.get(i));
+        }
+    }
+
+    @Test
+    public void testNarrowStopsAtFirstOutOfRange() {
+        final char[] outside = {0x00, 0x0A, 0x1F, 0x7F, 0x80, 0xE9, 0xFF, 0x0100, 0x2019, 0xD83D};
+        final Latin1Runs runs = new Latin1Runs();
+        for (final char c : outside) {
+            // Positions either side of where the window doubles
+            for (final int at : new int[]{0, 1, 63, 64, 65, 127, 128, 191, 192, 193, 448, 449, LENGTH - 1}) {
+                final char[] chars = run();
+                chars[OFFSET + at] = c;
+                final CharBuffer in = CharBuffer.wrap(chars);
+                final byte[] dst = new byte[LENGTH + OFFSET];
+                Arrays.fill(dst, (byte) '#');
+                final ByteBuffer out = ByteBuffer.wrap(dst);
+                final int copied = runs.narrow(in, OFFSET, out, OFFSET, LENGTH, 0x20, 0x7E);
+                assertEquals(at, copied, String.format("%04X at %d", (int) c, at));
+                for (int i = 0; i < at; i++) {
+                    assertEquals(chars[OFFSET + i], out.get(OFFSET + i));
+                }
+                // The caller's bytes past the run are left as they were
+                for (int i = OFFSET + at; i < dst.length; i++) {
+                    assertEquals('#', dst[i], String.format("%04X at %d, byte %d", (int) c, at, i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testNarrowRespectsLength() {
+        final char[] chars = run();
+        final Latin1Runs runs = new Latin1Runs();
+        for (int length = 0; length < 200; length++) {
+            final ByteBuffer out = ByteBuffer.allocate(LENGTH + OFFSET);
+            assertEquals(length, runs.narrow(CharBuffer.wrap(chars), OFFSET, out, 0, length, 0x20, 0x7E));
+            for (int i = length; i < out.capacity(); i++) {
+                assertEquals(0, out.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testWiden() {
+        final byte[] bytes = new byte[OFFSET + LENGTH + OFFSET];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (0x20 + i % 0x5F);
+        }
+        final ByteBuffer in = ByteBuffer.wrap(bytes);
+        final char[] chars = new char[LENGTH + 1];
+        new Latin1Runs().widen(in, OFFSET, CharBuffer.wrap(chars), 1, LENGTH);
+        assertEquals(bytes.length, in.limit());
+        assertEquals(0, chars[0]);
+        for (int i = 0; i < LENGTH; i++) {
+            assertEquals(bytes[OFFSET + i], chars[1 + i]);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.maybeitssquid.ach;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestLengthPreserving {
+
+    private static final Charset FIXED = TransliteratingASCIIProvider.lookup("X-ACH-Fixed");
+
+    private static String encode(final Charset charset, final String text) {
+        final ByteBuffer encoded = charset.encode(text);
+        return new String(encoded.array(), 0, encoded.limit(), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void testOneBytePerCodePoint() {
+        // Aggressive transliteration expands each of these, or drops it altogether
+        assertEquals("1/4", encode(Charset.forName("X-ACH-Aggressive"), "¼"));
+        assertEquals("1", encode(FIXED, "¼"));
+        assertEquals("Oouvre", encode(FIXED, "Œœuvre"));
+        assertEquals("O Brien", encode(FIXED, "O´Brien"));
+        assertEquals("e ", encode(FIXED, "é"));
+        assertEquals("Cafe", encode(FIXED, "Café"));
+        assertEquals("x y", encode(FIXED, "x😀y"));
+    }
+
+    @Test
+    public void testControlsStayUnmappable() {
+        assertEquals("A?B", encode(FIXED, "A\nB"));
+        assertFalse(FIXED.newEncoder().canEncode('\n'));
+        assertEquals(3, ((TransliteratingASCII) FIXED).indexOfDisallowed(new byte[]{'A', 'B', 'C', 0x0A}, 0, 4));
+    }
+
+    @Test
+    public void testLengthOfRandomText() {
+        final Random random = new Random(24);
+        for (int trial = 0; trial < 2000; trial++) {
+            final StringBuilder text = new StringBuilder();
+            final int length = random.nextInt(40);
+            for (int i = 0; i < length; i++) {
+                int codepoint;
+                do {
+                    codepoint = random.nextInt(4) == 0 ? 0x20 + random.nextInt(0x5F) : random.nextInt(0x3000);
+                } while (Character.isSurrogate((char) codepoint) || codepoint < 0x20 || codepoint == 0x7F);
+                text.appendCodePoint(codepoint);
+            }
+            final int codepoints = text.codePointCount(0, text.length());
+            assertEquals(codepoints, encode(FIXED, text.toString()).length(), text.toString());
+        }
+    }
+
+    @Test
+    public void testField() {
+        final LengthPreserving fixed = new LengthPreserving(new Naming().blockControls(), '_');
+        final byte[] record = new byte[12];
+        Arrays.fill(record, (byte) '#');
+        assertEquals(5, fixed.field("Æ½\n´😀", record, 1, 8));
+        assertEquals("#A1___   ###", new String(record, StandardCharsets.US_ASCII));
+        assertEquals(4, fixed.field("too long", record, 0, 4));
+        assertEquals("too __   ###", new String(record, StandardCharsets.US_ASCII));
+        assertThrows(IllegalArgumentException.class, () -> new LengthPreserving(new Naming(), '\n'));
+    }
+
+    @Test
+    public void testRecordWriterSkipsEncoder() throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (AchRecordWriter writer = new AchRecordWriter(Channels.newChannel(bytes), FIXED,
+                AchRecordWriter.Terminator.LF)) {
+            writer.field("Œ½", 3).field("|").field("Zoë\n", 5).field("|").endRecord();
+        }
+        final String record = bytes.toString(StandardCharsets.US_ASCII).split("\n")[0];
+        assertEquals("O1 |Zoe  |" + " ".repeat(AchRecordWriter.RECORD_LENGTH - 10), record);
+    }
+}
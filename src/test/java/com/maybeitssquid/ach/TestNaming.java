@@ -14,6 +14,15 @@ public class TestNaming extends TestCategorizing {
         this.encoder = new Naming();
     }
 
+    @Test
+    public void testAsciiChangeReachesDashes() {
+        assertIs("-", 0x2010);
+        encoder.encode('-', '_');
+        // One memoized before the change and one not, which must now agree
+        assertIs("_", 0x2010);
+        assertIs("_", 0x2011);
+    }
+
     @Test
     @Override
     public void testControl() {
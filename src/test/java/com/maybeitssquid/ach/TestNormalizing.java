@@ -3,9 +3,19 @@ package com.maybeitssquid.ach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TestNormalizing extends TestFiltering {
     @BeforeEach
@@ -18,6 +28,251 @@ public class TestNormalizing extends TestFiltering {
         assertEquals(Normalizer.Form.NFKD, ((Normalizing) encoder).getForm());
     }
 
+    @Test
+    public void testConcurrentApply() throws Exception {
+        final int start = 0x0080;
+        final int end = 0x2FFF;
+        final Filtering reference = encoder.getClass().getDeclaredConstructor().newInstance();
+
+        final int threads = 8;
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final CountDownLatch ready = new CountDownLatch(threads);
+        final List<Future<char[][]>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                final int offset = t * 97;
+                results.add(pool.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    final char[][] seen = new char[end - start + 1][];
+                    for (int i = 0; i < seen.length; i++) {
+                        final int index = (i + offset) % seen.length;
+                        seen[index] = encoder.apply(start + index);
+                    }
+                    return seen;
+                }));
+            }
+            final char[][] first = results.get(0).get(30, TimeUnit.SECONDS);
+            for (final Future<char[][]> result : results) {
+                final char[][] seen = result.get(30, TimeUnit.SECONDS);
+                for (int i = 0; i < seen.length; i++) {
+                    assertSame(first[i], seen[i], String.format("Threads disagree on cached %04X", start + i));
+                    assertArrayEquals(reference.apply(start + i), seen[i]);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testBoundedCache() {
+        final Normalizing bounded = new Normalizing(Normalizer.Form.NFKD, 1024);
+        final Normalizing reference = new Normalizing();
+        bounded.encode(0x00E6, "ae");
+        reference.encode(0x00E6, "ae");
+        for (int cp = 0x0080; cp < 0x30000; cp++) {
+            assertArrayEquals(reference.apply(cp), bounded.apply(cp), String.format("Wrong value for %04X", cp));
+            // Keep Latin-1 hot throughout the scan
+            bounded.apply(0x00E9);
+        }
+
+        final CacheStatistics scanned = bounded.getCacheStatistics();
+        assertTrue(scanned.capacity() <= 1024, scanned.toString());
+        assertTrue(scanned.evictions() > 0, scanned.toString());
+        assertTrue(scanned.hits() >= 0x30000 - 0x0080, scanned.toString());
+
+        // The hot page is still resident, and the override has outlived the eviction of its page
+        assertArrayEquals(new char[]{'e'}, bounded.apply(0x00E9));
+        assertArrayEquals(new char[]{'a', 'e'}, bounded.apply(0x00E6));
+        final CacheStatistics after = bounded.getCacheStatistics();
+        assertEquals(scanned.hits() + 2, after.hits());
+        assertEquals(scanned.misses(), after.misses());
+    }
+
+    @Test
+    public void testMissAllocation() throws Exception {
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        final com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        if (!allocations.isThreadAllocatedMemorySupported() || !allocations.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+        final long thread = Thread.currentThread().getId();
+        final int start = 0x0100;
+        final int end = 0x3000;
+
+        final Filtering normalizing = encoder.getClass().getDeclaredConstructor().newInstance();
+        // Allocate each memo page and the per-thread scratch before measuring, so that only misses are counted
+        for (int page = start; page < end; page += 0x100) {
+            normalizing.apply(page);
+        }
+        int misses = 0;
+        final long before = allocations.getThreadAllocatedBytes(thread);
+        for (int cp = start; cp < end; cp++) {
+            if ((cp & 0xFF) != 0) {
+                normalizing.apply(cp);
+                misses++;
+            }
+        }
+        final long bytes = allocations.getThreadAllocatedBytes(thread) - before;
+        assertTrue(bytes < misses * 16L, String.format("%.1f bytes per miss", (double) bytes / misses));
+    }
+
+    @Test
+    public void testCacheStatistics() {
+        final Normalizing normalizing = new Normalizing();
+        normalizing.apply(0x00E9);
+        normalizing.apply(0x00E9);
+        normalizing.apply(0x00E8);
+        normalizing.apply(0x0041);
+        final CacheStatistics statistics = normalizing.getCacheStatistics();
+        assertEquals(1, statistics.hits());
+        assertEquals(2, statistics.misses());
+        assertEquals(0, statistics.evictions());
+        assertEquals(1.0 / 3, statistics.hitRate(), 1e-9);
+    }
+
+    @Test
+    public void testPrefetchBlocks() throws Exception {
+        final Normalizing normalizing = ((Normalizing) encoder).prefetchBlocks();
+        final Filtering reference = encoder.getClass().getDeclaredConstructor().newInstance();
+
+        normalizing.apply(0x0101);
+        Normalizing.awaitPrefetches();
+        final long misses = normalizing.getCacheStatistics().misses();
+        for (int codepoint = 0x0100; codepoint <= 0x01FF; codepoint++) {
+            assertArrayEquals(reference.apply(codepoint), normalizing.apply(codepoint),
+                    String.format("Prefetched %04X", codepoint));
+        }
+        assertEquals(misses, normalizing.getCacheStatistics().misses(), "Block was not prefetched");
+
+        // Other blocks are left alone
+        normalizing.apply(0x0411);
+        assertEquals(misses + 1, normalizing.getCacheStatistics().misses());
+    }
+
+    @Test
+    public void testProfileAndWarmUp() throws Exception {
+        final WorkloadProfile profile = new WorkloadProfile();
+        final Normalizing recording = ((Normalizing) encoder).profile(profile);
+        recording.apply('a');
+        recording.apply(0x00E9);
+        recording.apply(0x00E9);
+        recording.apply(0x0142);
+        assertEquals(2, profile.size());
+        assertEquals(2, profile.blockCount(0x00E9));
+
+        final Normalizing fresh = (Normalizing) encoder.getClass().getDeclaredConstructor().newInstance();
+        assertEquals(2, fresh.warmUp(profile));
+        assertEquals(0, fresh.warmUp(profile), "Warm-up recomputed memoized code points");
+        assertEquals(0, fresh.getCacheStatistics().misses(), "Warm-up counted as misses");
+        assertArrayEquals(recording.apply(0x00E9), fresh.apply(0x00E9));
+        assertArrayEquals(recording.apply(0x0142), fresh.apply(0x0142));
+        assertEquals(0, fresh.getCacheStatistics().misses());
+    }
+
+    @Test
+    public void testSharedMemo() {
+        final Normalizing shared = (Normalizing) encoder;
+        final Normalizing view = new Normalizing(shared).blockControls();
+
+        assertArrayEquals(new char[]{'\t'}, shared.apply('\t'));
+        assertEquals(0, view.apply('\t').length, "ASCII table is shared");
+
+        final char[] computed = view.apply(0x00E9);
+        assertSame(computed, shared.apply(0x00E9));
+        assertEquals(1, shared.getCacheStatistics().misses());
+        assertEquals(1, view.getCacheStatistics().hits());
+        assertSame(shared.apply(0x0416), view.apply(0x0416));
+
+        view.encode(0x00E9, 'x');
+        assertArrayEquals(new char[]{'x'}, shared.apply(0x00E9));
+    }
+
+    @Test
+    public void testAsciiChangeReachesMemo() throws Exception {
+        final Normalizing normalizing = (Normalizing) encoder;
+        // Memoize a code point whose transliteration is built from an ASCII entry
+        assertArrayEquals(new char[]{'e'}, normalizing.apply(0x00E9));
+        normalizing.encode('e', 'x');
+        assertArrayEquals(new char[]{'x'}, normalizing.apply(0x00E9));
+        assertArrayEquals(new char[]{'x'}, normalizing.apply(0x00E8));
+        normalizing.block('e');
+        assertEquals(0, normalizing.apply(0x00E9).length);
+
+        // Misses racing the change must not leave a value computed from the old table
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        final AtomicBoolean stop = new AtomicBoolean();
+        final List<Future<?>> readers = new ArrayList<>();
+        try {
+            for (int t = 0; t < 4; t++) {
+                readers.add(pool.submit(() -> {
+                    while (!stop.get()) {
+                        for (int cp = 0x00E0; cp < 0x0100; cp++) {
+                            normalizing.apply(cp);
+                        }
+                    }
+                }));
+            }
+            for (int i = 0; i < 2_000; i++) {
+                normalizing.encode('e', (char) ('a' + i % 26));
+            }
+            normalizing.encode('e', 'y');
+        } finally {
+            stop.set(true);
+            pool.shutdown();
+        }
+        for (final Future<?> reader : readers) {
+            reader.get(30, TimeUnit.SECONDS);
+        }
+        assertArrayEquals(new char[]{'y'}, normalizing.apply(0x00E9), "Stale transliteration left in the memo");
+        assertArrayEquals(new char[]{'y'}, normalizing.apply(0x00EB), "Stale transliteration left in the memo");
+    }
+
+    @Test
+    public void testHotSwapOverrides() throws Exception {
+        final Normalizing normalizing = (Normalizing) encoder;
+        final int codepoint = 0x00E9;
+        final char[] computed = normalizing.apply(codepoint);
+        final char[] override = {'x'};
+
+        final int threads = 4;
+        final ExecutorService pool = Executors.newFixedThreadPool(threads);
+        final AtomicBoolean stop = new AtomicBoolean();
+        final List<Future<Integer>> readers = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                readers.add(pool.submit(() -> {
+                    int torn = 0;
+                    while (!stop.get()) {
+                        final char[] seen = normalizing.apply(codepoint);
+                        if (!Arrays.equals(seen, computed) && !Arrays.equals(seen, override)) {
+                            torn++;
+                        }
+                    }
+                    return torn;
+                }));
+            }
+            for (int i = 0; i < 20_000; i++) {
+                normalizing.encode(codepoint, override);
+                normalizing.block(codepoint);
+            }
+            assertArrayEquals(computed, normalizing.apply(codepoint), "Stale override left in the memo");
+            normalizing.encode(codepoint, override);
+            assertArrayEquals(override, normalizing.apply(codepoint));
+        } finally {
+            stop.set(true);
+            pool.shutdown();
+        }
+        for (final Future<Integer> reader : readers) {
+            assertEquals(0, (int) reader.get(30, TimeUnit.SECONDS), "Reader saw neither the old nor the new value");
+        }
+        assertArrayEquals(override, normalizing.apply(codepoint));
+    }
+
     @Test
     public void testHigh() {
         encodeCharHigh();
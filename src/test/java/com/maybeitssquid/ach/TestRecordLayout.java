@@ -0,0 +1,173 @@
+package com.maybeitssquid.ach;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestRecordLayout {
+
+    private static String text(final byte[] bytes, final int offset) {
+        return new String(bytes, offset, RecordLayout.RECORD_LENGTH, StandardCharsets.US_ASCII);
+    }
+
+    private static void entry(final CompiledRecordLayout layout, final byte[] dst, final int offset) {
+        layout.blank(dst, offset);
+        layout.field("transactionCode").write(22, dst, offset);
+        layout.field("receivingDfiIdentification").write("09100001", dst, offset);
+        layout.field("checkDigit").write(9, dst, offset);
+        layout.field("dfiAccountNumber").write("1234567890", dst, offset);
+        layout.field("amount").write(12345, dst, offset);
+        layout.field("individualIdentificationNumber").write("ID0001", dst, offset);
+        layout.field("individualName").write("José Müller-Ñúñez and Family", dst, offset);
+        layout.field("addendaRecordIndicator").write(0, dst, offset);
+        layout.field("traceNumber").write(91000010000001L, dst, offset);
+    }
+
+    @Test
+    public void testEntryDetail() {
+        final CompiledRecordLayout layout = RecordLayout.entryDetail().compile(Charset.forName("X-ACH-Aggressive"));
+        final byte[] record = new byte[RecordLayout.RECORD_LENGTH + 3];
+        entry(layout, record, 3);
+        final String expected = String.format("6%02d%8s%1d%-17s%010d%-15s%-22.22s%-2s%1d%015d",
+                22, "09100001", 9, "1234567890", 12345, "ID0001", "Jose Muller-Nunez and Family", "", 0,
+                91000010000001L);
+        assertEquals(expected, text(record, 3));
+    }
+
+    @Test
+    public void testByteBufferSlots() {
+        final CompiledRecordLayout layout = RecordLayout.entryDetail().compile(Charset.forName("X-ACH-Aggressive"));
+        final byte[] expected = new byte[RecordLayout.RECORD_LENGTH];
+        entry(layout, expected, 0);
+
+        final ByteBuffer direct = ByteBuffer.allocateDirect(RecordLayout.RECORD_LENGTH * 2);
+        final ByteBuffer heap = ByteBuffer.wrap(new byte[RecordLayout.RECORD_LENGTH * 3], 5, 200).slice();
+        for (final ByteBuffer buffer : new ByteBuffer[]{direct, heap}) {
+            final int slot = RecordLayout.RECORD_LENGTH;
+            layout.blank(buffer, slot);
+            layout.field("transactionCode").write(22, buffer, slot);
+            layout.field("receivingDfiIdentification").write("09100001", buffer, slot);
+            layout.field("checkDigit").write(9, buffer, slot);
+            layout.field("dfiAccountNumber").write("1234567890", buffer, slot);
+            layout.field("amount").write(12345, buffer, slot);
+            layout.field("individualIdentificationNumber").write("ID0001", buffer, slot);
+            layout.field("individualName").write("José Müller-Ñúñez and Family", buffer, slot);
+            layout.field("addendaRecordIndicator").write(0, buffer, slot);
+            layout.field("traceNumber").write(91000010000001L, buffer, slot);
+            assertEquals(0, buffer.position());
+            final byte[] written = new byte[RecordLayout.RECORD_LENGTH];
+            for (int i = 0; i < written.length; i++) {
+                written[i] = buffer.get(slot + i);
+            }
+            assertArrayEquals(expected, written);
+        }
+    }
+
+    @Test
+    public void testFileHeaderAndControl() {
+        final CompiledRecordLayout header = RecordLayout.fileHeader().compile();
+        final byte[] record = new byte[RecordLayout.RECORD_LENGTH];
+        header.blank(record, 0);
+        header.field("immediateDestination").write("091000019", record, 0);
+        header.field("immediateOrigin").write("1234567890", record, 0);
+        header.field("fileCreationDate").write("261018", record, 0);
+        header.field("fileCreationTime").write("0905", record, 0);
+        header.field("fileIdModifier").write("A", record, 0);
+        header.field("immediateDestinationName").write("WELLS FARGO", record, 0);
+        header.field("immediateOriginName").write("ACME CORP", record, 0);
+        assertEquals(String.format("101 0910000191234567890261018%s0905A094101%-23s%-23s%8s", "", "WELLS FARGO",
+                "ACME CORP", ""), text(record, 0));
+
+        final CompiledRecordLayout control = RecordLayout.fileControl().compile();
+        control.blank(record, 0);
+        control.field("batchCount").write(1, record, 0);
+        control.field("blockCount").write(1, record, 0);
+        control.field("entryAddendaCount").write(2, record, 0);
+        control.field("entryHash").write(18200002, record, 0);
+        control.field("totalDebitEntryDollarAmount").write(0, record, 0);
+        control.field("totalCreditEntryDollarAmount").write(24690, record, 0);
+        assertEquals("9000001000001000000020018200002000000000000000000024690" + " ".repeat(39),
+                text(record, 0));
+    }
+
+    @Test
+    public void testLayoutsCoverEveryPosition() {
+        final RecordLayout[] layouts = {RecordLayout.fileHeader(), RecordLayout.batchHeader(),
+                RecordLayout.entryDetail(), RecordLayout.addenda(), RecordLayout.batchControl(),
+                RecordLayout.fileControl()};
+        final char[] types = {'1', '5', '6', '7', '8', '9'};
+        for (int i = 0; i < layouts.length; i++) {
+            final byte[] record = new byte[RecordLayout.RECORD_LENGTH];
+            layouts[i].compile().blank(record, 0);
+            assertEquals(types[i], record[0]);
+            // Any position that no field covers would show up as a gap if declared as a one-byte constant
+            final RecordLayout layout = layouts[i];
+            for (int start = 1; start <= RecordLayout.RECORD_LENGTH; start++) {
+                final int position = start;
+                assertThrows(IllegalArgumentException.class, () -> layout.constant(position, "X"));
+            }
+        }
+    }
+
+    @Test
+    public void testFieldRules() {
+        final CompiledRecordLayout layout = new RecordLayout()
+                .numeric("number", 1, 4)
+                .alphanumeric("text", 5, 6)
+                .field("right", 11, 5, RecordLayout.Justification.RIGHT, '*', RecordLayout.Type.ALPHANUMERIC)
+                .field("left", 16, 5, RecordLayout.Justification.LEFT, ' ', RecordLayout.Type.NUMERIC)
+                .constant(94, "Z")
+                .compile();
+        final byte[] record = new byte[RecordLayout.RECORD_LENGTH];
+        Arrays.fill(record, (byte) '#');
+        layout.blank(record, 0);
+        assertEquals("0000      *****     " + " ".repeat(73) + "Z", text(record, 0));
+
+        layout.field("number").write(7, record, 0);
+        layout.field("text").write("Long text\n", record, 0);
+        // The strict charset does not combine marks, so the accent is replaced on its own, as the encoder would
+        layout.field("right").write("é́ab", record, 0);
+        layout.field("left").write(42, record, 0);
+        assertEquals("0007Long t*??ab42   ", text(record, 0).substring(0, 20));
+
+        // Rewriting a field replaces all of it
+        layout.field("text").write("a\n", record, 0);
+        assertEquals("0007a?    *??ab42   ", text(record, 0).substring(0, 20));
+
+        assertEquals("??ab", new String(Charset.forName("X-ACH").encode("é́ab").array(), 0, 4,
+                StandardCharsets.US_ASCII));
+
+        // A combining mark after a transliterated letter goes with it
+        final CompiledRecordLayout aggressive = new RecordLayout().alphanumeric("text", 1, 6)
+                .compile(Charset.forName("X-ACH-Aggressive"));
+        aggressive.field("text").write("é́ab", record, 0);
+        assertEquals("eab   ", text(record, 0).substring(0, 6));
+        // But not one after a space
+        aggressive.field("text").write("a \u0301b", record, 0);
+        assertEquals("a ?b  ", text(record, 0).substring(0, 6));
+
+        assertThrows(IllegalArgumentException.class, () -> layout.field("number").write(12345, record, 0));
+        assertThrows(IllegalArgumentException.class, () -> layout.field("number").write(-1, record, 0));
+        assertThrows(IllegalArgumentException.class, () -> layout.field("number").write("12a", record, 0));
+        assertThrows(IllegalArgumentException.class, () -> layout.field("number").write("12345", record, 0));
+        assertThrows(IllegalArgumentException.class, () -> layout.field("missing"));
+    }
+
+    @Test
+    public void testDeclarationErrors() {
+        assertThrows(IllegalArgumentException.class, () -> new RecordLayout().numeric("a", 0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RecordLayout().numeric("a", 94, 2));
+        assertThrows(IllegalArgumentException.class, () -> new RecordLayout().numeric("a", 1, 0));
+        assertThrows(IllegalArgumentException.class, () -> new RecordLayout().numeric("a", 1, 5).numeric("b", 5, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RecordLayout().numeric("a", 1, 5).numeric("a", 6, 1));
+        assertThrows(IllegalArgumentException.class, () -> new RecordLayout().constant(1, "\n"));
+        assertThrows(IllegalArgumentException.class, () -> new RecordLayout()
+                .field("a", 1, 1, RecordLayout.Justification.LEFT, '\t', RecordLayout.Type.ALPHANUMERIC));
+        assertThrows(IllegalArgumentException.class, () -> new RecordLayout().compile(StandardCharsets.US_ASCII));
+    }
+}
@@ -0,0 +1,329 @@
+package com.maybeitssquid.ach;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestTransliteratingASCII {
+
+    private static boolean naiveWithin(final long word, final int low, final int high) {
+        for (int i = 0; i < Long.BYTES; i++) {
+            final int b = (int) (word >>> (i * 8)) & 0xFF;
+            if (b < low || b > high) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void testIsWithin() {
+        final Random random = new Random(0x5A5A);
+        final int[][] ranges = {{0x20, 0x7E}, {0x00, 0x7F}, {0x0A, 0x0A}, {0x41, 0x5A}, {0x00, 0x00}, {0x7F, 0x7F}};
+        for (final int[] range : ranges) {
+            for (int n = 0; n < 20_000; n++) {
+                long word = 0;
+                for (int i = 0; i < Long.BYTES; i++) {
+                    // Mostly in-range bytes, with the occasional byte anywhere in 0x00 to 0xFF
+                    final int b = random.nextInt(8) == 0
+                            ? random.nextInt(0x100)
+                            : range[0] + random.nextInt(range[1] - range[0] + 1);
+                    word |= (long) b << (i * 8);
+                }
+                assertEquals(naiveWithin(word, range[0], range[1]),
+                        TransliteratingASCII.isWithin(word, range[0], range[1]),
+                        String.format("%016X in [%02X, %02X]", word, range[0], range[1]));
+            }
+        }
+    }
+
+    @Test
+    public void testIdentityRange() {
+        assertEquals(0x007F, new Filtering().identityRange());
+        assertEquals(0x207E, new Filtering().blockControls().identityRange());
+        assertEquals(0x207E, new Filtering().blockControls().encode(0x0A, '\n').identityRange());
+        assertEquals(0x427E, new Filtering().blockControls().encode(0x41, 'a').identityRange());
+    }
+
+    @Test
+    public void testLegalReplacement() {
+        final CharsetEncoder ach = Charset.forName("X-ACH").newEncoder();
+        assertTrue(ach.isLegalReplacement(new byte[]{'?'}));
+        assertTrue(ach.isLegalReplacement(new byte[]{'N', '/', 'A'}));
+        assertFalse(ach.isLegalReplacement(new byte[]{'\n'}));
+        assertFalse(ach.isLegalReplacement(new byte[]{(byte) 0x80}));
+        assertFalse(ach.isLegalReplacement(new byte[]{'?', 0x7F}));
+
+        final CharsetEncoder newlines = Charset.forName("X-ACH-Newlines").newEncoder();
+        assertTrue(newlines.isLegalReplacement(new byte[]{'\n'}));
+        assertArrayEquals(new byte[]{'\n'}, newlines.replaceWith(new byte[]{'\n'}).replacement());
+        assertThrows(IllegalArgumentException.class, () -> ach.replaceWith(new byte[]{'\n'}));
+    }
+
+    @Test
+    public void testByteTransliterators() {
+        final String text = "Nguy\u1EC5n \u0141\u00F3d\u017A \u2018Caf\u00E9\u2019 \u6771\u4EAC \uD83D\uDE00 A\u0301";
+        final Naming naming = new Naming();
+        final String expected = encode(new TransliteratingASCII("X-Test-Naming", new String[0], naming), text);
+        assertEquals("Nguyen Lodz 'Cafe' ?? ? A", expected);
+        final TransliteratingASCII compiled = new TransliteratingASCII("X-Test-Compiled", new String[0],
+                naming.compile());
+        assertEquals(expected, encode(compiled, text));
+        // The compiled snapshot keeps the ASCII fast paths
+        assertNotEquals(0x7F00, compiled.identityRange());
+        assertEquals(naming.identityRange(), compiled.identityRange());
+        // Neither a Filtering nor a ByteTransliterator, so the charset adapts it, but cannot tell which marks combine
+        final IntFunction<char[]> adapted = naming::apply;
+        assertEquals(expected + "?",
+                encode(new TransliteratingASCII("X-Test-Adapted", new String[0], adapted), text));
+    }
+
+    @Test
+    public void testCoderClasses() {
+        final Charset upper = new TransliteratingASCII("X-Test-Upper", new String[0],
+                new Filtering().encode('a', 'A').encode('b', 'B'));
+        final Charset lower = new TransliteratingASCII("X-Test-Lower", new String[0],
+                new Filtering().encode('A', 'a').encode('B', 'b'));
+        // Interleave the two so that each coder must use its own charset's transliterator
+        for (int i = 0; i < 3; i++) {
+            assertEquals("ABAB", encode(upper, "abAB"));
+            assertEquals("abab", encode(lower, "abAB"));
+            assertEquals("ABAB", upper.decode(ByteBuffer.wrap(new byte[]{'a', 'b', 'A', 'B'})).toString());
+            assertEquals("abab", lower.decode(ByteBuffer.wrap(new byte[]{'a', 'b', 'A', 'B'})).toString());
+        }
+        assertSame(upper.newEncoder().getClass(), upper.newEncoder().getClass());
+        assertSame(lower.newDecoder().getClass(), lower.newDecoder().getClass());
+    }
+
+    @Test
+    public void testLongRuns() {
+        // Clean runs long enough to be handed to the JDK, broken by characters each charset treats differently
+        final char[] breaks = {'\n', '\r', '\t', 0x00, 0x7F, 0xE9, 0x2019, 0x0301};
+        final Random random = new Random(0x1A71);
+        final StringBuilder text = new StringBuilder();
+        while (text.length() < 20_000) {
+            final int run = random.nextInt(4) == 0 ? random.nextInt(8) : random.nextInt(400);
+            for (int i = 0; i < run; i++) {
+                text.append((char) (0x20 + random.nextInt(0x5F)));
+            }
+            text.append(breaks[random.nextInt(breaks.length)]);
+        }
+        final char[] chars = text.toString().toCharArray();
+        final byte[] bytes = text.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+        for (final String name : new String[]{"X-ACH", "X-ACH-Newlines", "X-ACH-Aggressive",
+                "X-US-ASCII-Transliterating"}) {
+            final Charset charset = Charset.forName(name);
+            assertEquals(sliced(charset, chars), charset.encode(CharBuffer.wrap(chars)), name);
+            assertEquals(sliced(charset, bytes), charset.decode(ByteBuffer.wrap(bytes)), name);
+        }
+    }
+
+    @Test
+    public void testErrorActions() throws CharacterCodingException {
+        final String text = "ACH \u6771\u4EAC\u5927\u5B66 Caf\u00E9\u0301\u0301 \uD83D\uDE00\uD83D\uDE01\r\n\u0000\u0001 "
+                + "A\u0301\u0302 \u0300\u0300 \u4E00";
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (final String name : new String[]{"X-ACH", "X-ACH-Newlines", "X-ACH-Aggressive",
+                "X-US-ASCII-Transliterating"}) {
+            final Charset charset = Charset.forName(name);
+            for (final CodingErrorAction action : new CodingErrorAction[]{CodingErrorAction.IGNORE,
+                    CodingErrorAction.REPLACE}) {
+                final String expected = byReport(charset, bytes, action);
+                // Room for a few characters at a time, so that replacements land at the end of the output
+                for (int room = 1; room < 8; room++) {
+                    final CharsetDecoder decoder = charset.newDecoder()
+                            .onMalformedInput(action).onUnmappableCharacter(action);
+                    final ByteBuffer in = ByteBuffer.wrap(bytes);
+                    final StringBuilder decoded = new StringBuilder();
+                    final CharBuffer out = CharBuffer.allocate(room);
+                    CoderResult result;
+                    do {
+                        result = decoder.decode(in, out, true);
+                        decoded.append(out.flip());
+                        out.clear();
+                    } while (result.isOverflow());
+                    assertTrue(result.isUnderflow());
+                    assertEquals(expected, decoded.toString(), name + " " + action + " " + room);
+                }
+
+                final CharsetEncoder encoder = charset.newEncoder()
+                        .onMalformedInput(action).onUnmappableCharacter(action);
+                final ByteBuffer encoded = encoder.encode(CharBuffer.wrap(text));
+                assertEquals(byReport(charset, text, action), encoded, name + " " + action);
+            }
+        }
+    }
+
+    /**
+     * Decodes with errors reported and then handled here, one at a time, the way the superclass handles them.
+     */
+    private static String byReport(final Charset charset, final byte[] bytes, final CodingErrorAction action) {
+        final CharsetDecoder decoder = charset.newDecoder();
+        final ByteBuffer in = ByteBuffer.wrap(bytes);
+        final CharBuffer out = CharBuffer.allocate(bytes.length * 4);
+        CoderResult result;
+        while ((result = decoder.decode(in, out, true)).isError()) {
+            in.position(in.position() + result.length());
+            if (action == CodingErrorAction.REPLACE) {
+                out.put(decoder.replacement());
+            }
+        }
+        return out.flip().toString();
+    }
+
+    /**
+     * Encodes with errors reported and then handled here, one at a time, the way the superclass handles them.
+     */
+    private static ByteBuffer byReport(final Charset charset, final String text, final CodingErrorAction action) {
+        final CharsetEncoder encoder = charset.newEncoder();
+        final CharBuffer in = CharBuffer.wrap(text);
+        final ByteBuffer out = ByteBuffer.allocate(text.length() * 4);
+        CoderResult result;
+        while ((result = encoder.encode(in, out, true)).isError()) {
+            in.position(in.position() + result.length());
+            if (action == CodingErrorAction.REPLACE) {
+                out.put((byte) '?');
+            }
+        }
+        encoder.flush(out);
+        return out.flip();
+    }
+
+    /**
+     * Encodes in slices too short to be handed to the JDK.
+     */
+    private static ByteBuffer sliced(final Charset charset, final char[] chars) {
+        final CharsetEncoder encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final ByteBuffer out = ByteBuffer.allocate(chars.length * 4);
+        final CharBuffer in = CharBuffer.wrap(chars);
+        while (in.hasRemaining()) {
+            final CharBuffer slice = in.slice();
+            slice.limit(Math.min(slice.limit(), Latin1Runs.MINIMUM - 1));
+            encoder.encode(slice, out, slice.remaining() == in.remaining());
+            in.position(in.position() + slice.position());
+        }
+        encoder.flush(out);
+        return out.flip();
+    }
+
+    /**
+     * Decodes in slices too short to be handed to the JDK.
+     */
+    private static CharBuffer sliced(final Charset charset, final byte[] bytes) {
+        final CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        final CharBuffer out = CharBuffer.allocate(bytes.length * 2);
+        final ByteBuffer in = ByteBuffer.wrap(bytes);
+        while (in.hasRemaining()) {
+            final ByteBuffer slice = in.slice();
+            slice.limit(Math.min(slice.limit(), Latin1Runs.MINIMUM - 1));
+            decoder.decode(slice, out, slice.remaining() == in.remaining());
+            in.position(in.position() + slice.position());
+        }
+        decoder.flush(out);
+        return out.flip();
+    }
+
+    private static boolean accepts(final Charset charset, final byte b) {
+        try {
+            return charset.newDecoder().decode(ByteBuffer.wrap(new byte[]{b})).length() > 0;
+        } catch (final CharacterCodingException e) {
+            return false;
+        }
+    }
+
+    private static List<Integer> disallowed(final Charset charset, final byte[] bytes, final int from, final int to) {
+        final List<Integer> expected = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            if (!accepts(charset, bytes[i])) {
+                expected.add(i);
+            }
+        }
+        return expected;
+    }
+
+    @Test
+    public void testDisallowed() {
+        final Random random = new Random(22);
+        for (final String name : new String[]{"X-ACH", "X-ACH-Newlines", "X-ACH-Aggressive",
+                "X-US-ASCII-Transliterating"}) {
+            final TransliteratingASCII charset = (TransliteratingASCII) Charset.forName(name);
+            for (int trial = 0; trial < 200; trial++) {
+                final byte[] bytes = new byte[random.nextInt(300)];
+                for (int i = 0; i < bytes.length; i++) {
+                    // Mostly printable, so that clean runs are long enough to be checked a word at a time
+                    bytes[i] = (byte) (random.nextInt(10) == 0 ? random.nextInt(0x100) : 0x20 + random.nextInt(0x5F));
+                }
+                final int from = bytes.length == 0 ? 0 : random.nextInt(Math.min(bytes.length, 20));
+                final List<Integer> expected = disallowed(charset, bytes, from, bytes.length);
+                final int first = expected.isEmpty() ? -1 : expected.get(0);
+                final String message = name + ", trial " + trial;
+
+                assertEquals(first, charset.indexOfDisallowed(bytes, from, bytes.length), message);
+                final List<Integer> found = new ArrayList<>();
+                assertEquals(expected.size(), charset.forEachDisallowed(bytes, from, bytes.length, found::add));
+                assertEquals(expected, found, message);
+
+                final ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length).put(bytes);
+                direct.position(from);
+                final ByteBuffer readOnly = ByteBuffer.wrap(bytes).asReadOnlyBuffer().position(from);
+                for (final ByteBuffer buffer : new ByteBuffer[]{ByteBuffer.wrap(bytes).position(from), direct,
+                        readOnly}) {
+                    assertEquals(first, charset.indexOfDisallowed(buffer), message);
+                    found.clear();
+                    assertEquals(expected.size(), charset.forEachDisallowed(buffer, found::add));
+                    assertEquals(expected, found, message);
+                    assertEquals(from, buffer.position());
+                }
+
+                // A slice indexes from its own start, not from the start of the array behind it
+                final ByteBuffer slice = ByteBuffer.wrap(bytes).position(from).slice();
+                found.clear();
+                charset.forEachDisallowed(slice, found::add);
+                for (int i = 0; i < found.size(); i++) {
+                    assertEquals(expected.get(i) - from, (int) found.get(i), message);
+                }
+
+                final String text = new String(bytes, from, bytes.length - from, StandardCharsets.ISO_8859_1);
+                assertEquals(first < 0 ? -1 : first - from, charset.indexOfDisallowed(text), message);
+                found.clear();
+                assertEquals(expected.size(), charset.forEachDisallowed(text, found::add));
+                for (int i = 0; i < found.size(); i++) {
+                    assertEquals(expected.get(i) - from, (int) found.get(i), message);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDisallowedFollowsChanges() {
+        final Filtering filtering = new Filtering().blockControls();
+        final TransliteratingASCII charset = new TransliteratingASCII("X-Test", new String[0], filtering);
+        final byte[] bytes = "ACH FILE".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(-1, charset.indexOfDisallowed(bytes, 0, bytes.length));
+        filtering.block('F');
+        assertEquals(4, charset.indexOfDisallowed(bytes, 0, bytes.length));
+        assertEquals(4, charset.indexOfDisallowed("ACH FILE"));
+        assertEquals(3, charset.indexOfDisallowed("ACH\u00E9"));
+        assertEquals(3, charset.indexOfDisallowed("ACH\n"));
+        filtering.encode('\n', ' ');
+        assertEquals(-1, charset.indexOfDisallowed("ACH\n"));
+    }
+
+    private static String encode(final Charset charset, final String text) {
+        final ByteBuffer encoded = charset.encode(text);
+        return new String(encoded.array(), 0, encoded.limit(), StandardCharsets.US_ASCII);
+    }
+}
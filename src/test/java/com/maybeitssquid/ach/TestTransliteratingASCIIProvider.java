@@ -9,7 +9,8 @@ import java.util.Iterator;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class TestTransliteratingASCIIProvider {
-    final String[] canonicals = {"X-ACH", "X-ACH-Newlines", "X-ACH-Aggressive", "X-US-ASCII-Transliterating"};
+    final String[] canonicals = {"X-ACH", "X-ACH-Newlines", "X-ACH-Aggressive", "X-US-ASCII-Transliterating",
+            "X-ACH-Fixed"};
 
     @Test
     public void testCharsets() {
@@ -50,6 +51,41 @@ public class TestTransliteratingASCIIProvider {
         }
     }
 
+    @Test
+    public void testSharedInstances() {
+        final CharsetProvider first = new TransliteratingASCIIProvider();
+        final CharsetProvider second = new TransliteratingASCIIProvider();
+        for (final String name : canonicals) {
+            assertSame(first.charsetForName(name), second.charsetForName(name));
+        }
+        // Cycle through more names than the JDK caches, so that later lookups go back to the ServiceLoader
+        for (int i = 0; i < 3; i++) {
+            for (final String name : canonicals) {
+                assertSame(first.charsetForName(name), Charset.forName(name));
+                assertSame(first.charsetForName(name), TransliteratingASCIIProvider.lookup(name));
+            }
+        }
+    }
+
+    @Test
+    public void testSharedMemo() {
+        final TransliteratingASCII ach = (TransliteratingASCII) TransliteratingASCIIProvider.lookup("X-ACH-Aggressive");
+        final TransliteratingASCII us =
+                (TransliteratingASCII) TransliteratingASCIIProvider.lookup("X-US-ASCII-Transliterating");
+        assertNotNull(ach);
+        assertNotNull(us);
+
+        final long misses = ach.getCacheStatistics().misses();
+        assertEquals("Lodz", new String(us.encode("\u0141\u00F3d\u017A").array(), 0, 4));
+        final long learned = ach.getCacheStatistics().misses() - misses;
+        assertEquals("Lodz", new String(ach.encode("\u0141\u00F3d\u017A").array(), 0, 4));
+        assertEquals(misses + learned, ach.getCacheStatistics().misses(), "Charsets have separate memos");
+
+        // Only ASCII controls differ
+        assertEquals((byte) '?', ach.encode("\t").get());
+        assertEquals((byte) '\t', us.encode("\t").get());
+    }
+
     @Test
     public void testSPIResource() {
         for (final String name: canonicals) {
@@ -0,0 +1,97 @@
+package com.maybeitssquid.ach;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestWorkloadProfile {
+
+    @Test
+    public void testRecord() {
+        final WorkloadProfile profile = new WorkloadProfile();
+        profile.record('A');
+        profile.record(0x00E9);
+        profile.record(0x00E9);
+        profile.record(0x00FC);
+        profile.record(0x1F600);
+        profile.record(-1);
+        profile.record(0x110000);
+
+        assertEquals(3, profile.size());
+        assertFalse(profile.contains('A'));
+        assertTrue(profile.contains(0x00E9));
+        assertTrue(profile.contains(0x00FC));
+        assertTrue(profile.contains(0x1F600));
+        assertFalse(profile.contains(0x00EA));
+        assertFalse(profile.contains(0x01E9));
+        assertEquals(3, profile.blockCount(0x0000));
+        assertEquals(1, profile.blockCount(0x1F6FF));
+        assertEquals(0, profile.blockCount(0x0100));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final WorkloadProfile profile = new WorkloadProfile();
+        for (int codepoint = 0x0100; codepoint < 0x0180; codepoint += 3) {
+            profile.record(codepoint);
+        }
+        profile.record(0x0416);
+        profile.record(Character.MAX_CODE_POINT);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        profile.writeTo(out);
+        assertEquals(4 + 3 * 44 + 4, out.size(), "Profile holds more than the blocks in use");
+
+        final WorkloadProfile read = WorkloadProfile.readFrom(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(profile.size(), read.size());
+        for (int codepoint = 0; codepoint <= Character.MAX_CODE_POINT; codepoint++) {
+            assertEquals(profile.contains(codepoint), read.contains(codepoint), String.format("%04X", codepoint));
+        }
+        assertEquals(profile.blockCount(0x0100), read.blockCount(0x0100));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        final Path directory = Files.createTempDirectory("profile");
+        final Path file = directory.resolve("ach.profile");
+        try {
+            final WorkloadProfile profile = new WorkloadProfile();
+            profile.record(0x0141);
+            profile.save(file);
+            profile.record(0x0142);
+            profile.save(file);
+            final WorkloadProfile loaded = WorkloadProfile.load(file);
+            assertTrue(loaded.contains(0x0141));
+            assertTrue(loaded.contains(0x0142));
+            assertEquals(2, loaded.size());
+        } finally {
+            Files.deleteIfExists(file);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testNotAProfile() {
+        assertThrows(IOException.class,
+                () -> WorkloadProfile.readFrom(new ByteArrayInputStream(new byte[]{'A', 'C', 'H', 'X', 0, 0, 0, 0})));
+    }
+
+    @Test
+    public void testMerge() {
+        final WorkloadProfile first = new WorkloadProfile();
+        first.record(0x00E9);
+        final WorkloadProfile second = new WorkloadProfile();
+        second.record(0x00E9);
+        second.record(0x0416);
+        first.merge(second);
+        assertEquals(2, first.size());
+        assertEquals(2, first.blockCount(0x00E9));
+        assertEquals(1, first.blockCount(0x0416));
+    }
+}